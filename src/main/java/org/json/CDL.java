@@ -134,6 +134,46 @@ public class CDL {
         return ja != null ? ja.toJSONObject(names) :  null;
     }
 
+    /**
+     * Produce a ColumnarJSONArray from a comma delimited text string, using
+     * the first row as a source of names. Each name becomes a column, which
+     * takes much less memory than a JSONObject per row.
+     * @param string The comma delimited text.
+     * @return A ColumnarJSONArray, or null if there are no rows.
+     * @throws JSONException
+     */
+    public static ColumnarJSONArray toColumnarJSONArray(String string)
+            throws JSONException {
+        return toColumnarJSONArray(new JSONTokener(string));
+    }
+
+    /**
+     * Produce a ColumnarJSONArray from a comma delimited text, using the
+     * first row as a source of names.
+     * @param x The JSONTokener containing the comma delimited text.
+     * @return A ColumnarJSONArray, or null if there are no rows.
+     * @throws JSONException
+     */
+    public static ColumnarJSONArray toColumnarJSONArray(JSONTokener x)
+            throws JSONException {
+        JSONArray names = rowToJSONArray(x);
+        if (names == null || names.length() == 0) {
+            return null;
+        }
+        ColumnarJSONArray ca = new ColumnarJSONArray();
+        for (;;) {
+            JSONObject jo = rowToJSONObject(names, x);
+            if (jo == null) {
+                break;
+            }
+            ca.put(jo);
+        }
+        if (ca.length() == 0) {
+            return null;
+        }
+        return ca;
+    }
+
     /**
      * Produce a JSONArray of JSONObjects from a comma delimited text string,
      * using the first row as a source of names.
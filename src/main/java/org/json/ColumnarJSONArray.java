@@ -0,0 +1,788 @@
+package org.json;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A ColumnarJSONArray is a JSONArray of JSONObjects that stores each member
+ * name as a column instead of storing a JSONObject per element. Integers
+ * and longs are kept in a <code>long[]</code>, doubles in a
+ * <code>double[]</code>, booleans in a bit set and strings as codes into a
+ * dictionary of distinct strings. A column that mixes whole numbers and
+ * doubles, such as <code>[10, 10.5]</code>, is kept as doubles as long as
+ * each whole number is exactly a double; it then returns Doubles for all of
+ * its values. A column whose values do not share one of these types falls
+ * back to an <code>Object[]</code>. Arrays of same-shaped
+ * objects, such as query results or the rows of <code>CDL.toJSONArray</code>,
+ * take much less memory this way, and a scan of one member over all rows
+ * reads a single array.
+ * <p>
+ * The elements are returned as JSONObject views of their row, made on each
+ * call to <code>opt</code>. Changes made through a view are stored in the
+ * columns. A view refers to a row by its index, so after a
+ * <code>remove</code> it sees the row that moved into its place. Integers
+ * are returned as an Integer when they fit, otherwise as a Long, which is
+ * what the parser produces. Members of a row are listed in the order in
+ * which their names first appeared in the array.
+ * <p>
+ * Only JSONObjects can be put into a ColumnarJSONArray. The text produced by
+ * <code>toString</code> and <code>write</code> is the usual array of
+ * objects.
+ */
+public class ColumnarJSONArray extends JSONArray {
+
+    /**
+     * The largest number of distinct strings kept in a dictionary. A string
+     * column with more distinct values is stored as plain objects.
+     */
+    private static final int MAX_DICTIONARY = 1 << 16;
+
+    /**
+     * The largest long up to which all longs are exact doubles.
+     */
+    private static final long EXACT = 1L << 53;
+
+    /**
+     * The columns, in the order in which their names first appeared.
+     */
+    private final Map<String, Column> columns =
+            new LinkedHashMap<String, Column>();
+
+    /**
+     * The number of rows.
+     */
+    private int rows;
+
+
+    /**
+     * The values of one member in all rows, and which rows have it.
+     */
+    private abstract static class Column {
+        final BitSet present = new BitSet();
+
+        /**
+         * Get the value of a row that has one.
+         */
+        abstract Object get(int row);
+
+        /**
+         * Store a value. Return false if the column cannot hold it.
+         */
+        abstract boolean set(int row, Object value);
+
+        /**
+         * Copy the value of one row to another.
+         */
+        abstract void move(int from, int to);
+
+        /**
+         * Estimate the bytes taken by the column, adding the objects it
+         * holds to a JSONFootprint.
+         */
+        long footprint(JSONFootprint f) {
+            return JSONFootprint.objectSize(2, 0) +
+                    JSONFootprint.bitSetSize(this.present);
+        }
+
+        double getDouble(int row) {
+            return ((Number)get(row)).doubleValue();
+        }
+
+        long getLong(int row) {
+            return ((Number)get(row)).longValue();
+        }
+
+        static int grow(int length, int row) {
+            return Math.max(Math.max(length * 2, row + 1), 8);
+        }
+    }
+
+
+    private static final class BooleanColumn extends Column {
+        private final BitSet values = new BitSet();
+
+        Object get(int row) {
+            return this.values.get(row) ? Boolean.TRUE : Boolean.FALSE;
+        }
+
+        boolean set(int row, Object value) {
+            if (!(value instanceof Boolean)) {
+                return false;
+            }
+            this.values.set(row, ((Boolean)value).booleanValue());
+            return true;
+        }
+
+        void move(int from, int to) {
+            this.values.set(to, this.values.get(from));
+        }
+
+        long footprint(JSONFootprint f) {
+            return super.footprint(f) + JSONFootprint.bitSetSize(this.values);
+        }
+    }
+
+
+    private static final class DoubleColumn extends Column {
+        private double[] values = new double[0];
+
+        Object get(int row) {
+            return Double.valueOf(this.values[row]);
+        }
+
+        double getDouble(int row) {
+            return this.values[row];
+        }
+
+        /**
+         * Store a Double, or an Integer or a Long that is exactly a double.
+         */
+        boolean set(int row, Object value) {
+            if (!(value instanceof Double || value instanceof Integer ||
+                    (value instanceof Long &&
+                    Math.abs(((Long)value).longValue()) <= EXACT))) {
+                return false;
+            }
+            if (row >= this.values.length) {
+                double[] a = new double[grow(this.values.length, row)];
+                System.arraycopy(this.values, 0, a, 0, this.values.length);
+                this.values = a;
+            }
+            this.values[row] = ((Number)value).doubleValue();
+            return true;
+        }
+
+        void move(int from, int to) {
+            this.values[to] = this.values[from];
+        }
+
+        long footprint(JSONFootprint f) {
+            return super.footprint(f) +
+                    JSONFootprint.arraySize(8, this.values.length);
+        }
+    }
+
+
+    private static final class LongColumn extends Column {
+        private long[] values = new long[0];
+
+        Object get(int row) {
+            long l = this.values[row];
+            return l == (int)l ? (Object)Integer.valueOf((int)l) :
+                    (Object)Long.valueOf(l);
+        }
+
+        long getLong(int row) {
+            return this.values[row];
+        }
+
+        boolean set(int row, Object value) {
+            if (!(value instanceof Integer || value instanceof Long)) {
+                return false;
+            }
+            if (row >= this.values.length) {
+                long[] a = new long[grow(this.values.length, row)];
+                System.arraycopy(this.values, 0, a, 0, this.values.length);
+                this.values = a;
+            }
+            this.values[row] = ((Number)value).longValue();
+            return true;
+        }
+
+        void move(int from, int to) {
+            this.values[to] = this.values[from];
+        }
+
+        long footprint(JSONFootprint f) {
+            return super.footprint(f) +
+                    JSONFootprint.arraySize(8, this.values.length);
+        }
+    }
+
+
+    private static final class ObjectColumn extends Column {
+        private Object[] values = new Object[0];
+
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        boolean set(int row, Object value) {
+            if (row >= this.values.length) {
+                Object[] a = new Object[grow(this.values.length, row)];
+                System.arraycopy(this.values, 0, a, 0, this.values.length);
+                this.values = a;
+            }
+            this.values[row] = value;
+            return true;
+        }
+
+        void move(int from, int to) {
+            this.values[to] = this.values[from];
+            this.values[from] = null;
+        }
+
+        long footprint(JSONFootprint f) {
+            for (int i = this.present.nextSetBit(0); i >= 0;
+                    i = this.present.nextSetBit(i + 1)) {
+                f.add(this.values[i]);
+            }
+            return super.footprint(f) +
+                    JSONFootprint.arraySize(4, this.values.length);
+        }
+    }
+
+
+    private static final class StringColumn extends Column {
+        private int[] codes = new int[0];
+        private String[] dictionary = new String[0];
+        private final Map<String, Integer> lookup =
+                new HashMap<String, Integer>();
+
+        Object get(int row) {
+            return this.dictionary[this.codes[row]];
+        }
+
+        boolean set(int row, Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            Integer code = this.lookup.get(value);
+            if (code == null) {
+                int size = this.lookup.size();
+                if (size >= MAX_DICTIONARY) {
+                    return false;
+                }
+                if (size >= this.dictionary.length) {
+                    String[] a = new String[grow(this.dictionary.length, size)];
+                    System.arraycopy(this.dictionary, 0, a, 0, size);
+                    this.dictionary = a;
+                }
+                this.dictionary[size] = (String)value;
+                code = Integer.valueOf(size);
+                this.lookup.put((String)value, code);
+            }
+            if (row >= this.codes.length) {
+                int[] a = new int[grow(this.codes.length, row)];
+                System.arraycopy(this.codes, 0, a, 0, this.codes.length);
+                this.codes = a;
+            }
+            this.codes[row] = code.intValue();
+            return true;
+        }
+
+        void move(int from, int to) {
+            this.codes[to] = this.codes[from];
+        }
+
+        /**
+         * The distinct strings are counted once each. The lookup map is
+         * counted with an Integer for each code past the shared ones.
+         */
+        long footprint(JSONFootprint f) {
+            int n = this.lookup.size();
+            for (int i = 0; i < n; i += 1) {
+                f.add(this.dictionary[i]);
+            }
+            return super.footprint(f) + JSONFootprint.objectSize(2, 0) +
+                    JSONFootprint.arraySize(4, this.codes.length) +
+                    JSONFootprint.arraySize(4, this.dictionary.length) +
+                    JSONFootprint.mapSize(n) + 16L * Math.max(0, n - 128);
+        }
+    }
+
+
+    /**
+     * A JSONObject view of one row.
+     */
+    private final class Row extends JSONObject {
+        private final int row;
+
+        Row(int row) {
+            super((Void)null);
+            this.row = row;
+        }
+
+        ColumnarJSONArray array() {
+            return ColumnarJSONArray.this;
+        }
+
+        @Override
+        public void clear() {
+            Iterator<Column> i = ColumnarJSONArray.this.columns.values()
+                    .iterator();
+            while (i.hasNext()) {
+                i.next().present.clear(this.row);
+            }
+        }
+
+        @Override
+        public JSONObject detach() {
+            Iterator<String> keys = keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object v = opt(key);
+                if (v instanceof JSONStringView) {
+                    put(key, v.toString());
+                } else if (v instanceof JSONObject) {
+                    ((JSONObject)v).detach();
+                } else if (v instanceof JSONArray) {
+                    ((JSONArray)v).detach();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public boolean has(String key) {
+            return opt(key) != null;
+        }
+
+        @Override
+        public Iterator<String> keys() {
+            final Iterator<Map.Entry<String, Column>> i =
+                    ColumnarJSONArray.this.columns.entrySet().iterator();
+            return new Iterator<String>() {
+                private String next = advance();
+
+                private String advance() {
+                    while (i.hasNext()) {
+                        Map.Entry<String, Column> e = i.next();
+                        if (e.getValue().present.get(Row.this.row)) {
+                            return e.getKey();
+                        }
+                    }
+                    return null;
+                }
+
+                public boolean hasNext() {
+                    return this.next != null;
+                }
+
+                public String next() {
+                    String key = this.next;
+                    if (key == null) {
+                        throw new NoSuchElementException();
+                    }
+                    this.next = advance();
+                    return key;
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int length() {
+            int n = 0;
+            Iterator<Column> i = ColumnarJSONArray.this.columns.values()
+                    .iterator();
+            while (i.hasNext()) {
+                if (i.next().present.get(this.row)) {
+                    n += 1;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public Object opt(String key) {
+            return ColumnarJSONArray.this.opt(this.row, key);
+        }
+
+        @Override
+        public JSONObject put(String key, Object value) throws JSONException {
+            if (key == null) {
+                throw new JSONException("Null key.");
+            }
+            set(this.row, key, value);
+            return this;
+        }
+
+        @Override
+        public Object remove(String key) {
+            Object value = opt(key);
+            if (value != null) {
+                ColumnarJSONArray.this.columns.get(key).present.clear(this.row);
+            }
+            return value;
+        }
+    }
+
+
+    /**
+     * Construct an empty ColumnarJSONArray.
+     */
+    public ColumnarJSONArray() {
+        super((Void)null);
+    }
+
+
+    /**
+     * Construct a ColumnarJSONArray holding the JSONObjects of a JSONArray.
+     * @param ja A JSONArray of JSONObjects.
+     * @throws JSONException If an element is not a JSONObject.
+     */
+    public ColumnarJSONArray(JSONArray ja) throws JSONException {
+        this();
+        int len = ja.length();
+        for (int i = 0; i < len; i += 1) {
+            put(ja.opt(i));
+        }
+    }
+
+
+    /**
+     * Construct a ColumnarJSONArray from a source JSON text.
+     * @param source A string that begins with
+     * <code>[</code>&nbsp;<small>(left bracket)</small>
+     *  and ends with <code>]</code>&nbsp;<small>(right bracket)</small>.
+     * @throws JSONException If there is a syntax error or if an element is
+     *  not a JSONObject.
+     */
+    public ColumnarJSONArray(String source) throws JSONException {
+        this(new JSONArray(source));
+    }
+
+
+    /**
+     * Remove all of the rows. The columns are kept.
+     */
+    @Override
+    public void clear() {
+        Iterator<Column> i = this.columns.values().iterator();
+        while (i.hasNext()) {
+            i.next().present.clear();
+        }
+        this.rows = 0;
+    }
+
+
+    /**
+     * Get the names of the columns, in the order in which they first
+     * appeared.
+     * @return An array of names.
+     */
+    public String[] columnNames() {
+        return this.columns.keySet().toArray(new String[this.columns.size()]);
+    }
+
+
+    /**
+     * Add the memory taken by the columns to a JSONFootprint. The rows are
+     * views made on demand, so they are not counted.
+     */
+    @Override
+    void footprint(JSONFootprint f) {
+        long size = JSONFootprint.objectSize(3, 4) +
+                JSONFootprint.mapSize(this.columns.size());
+        Iterator<Map.Entry<String, Column>> i =
+                this.columns.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<String, Column> e = i.next();
+            f.add(e.getKey());
+            size += e.getValue().footprint(f);
+        }
+        f.addArray(size);
+    }
+
+
+    /**
+     * Get the double value of a member of a row. Double and long columns
+     * are read without boxing.
+     * @param index The row index.
+     * @param key   A key string.
+     * @return The numeric value.
+     * @throws JSONException If the row has no such member or if the value
+     *  is not a number.
+     */
+    public double getDouble(int index, String key) throws JSONException {
+        Column c = column(index, key);
+        try {
+            return c.getDouble(index);
+        } catch (Exception e) {
+            throw new JSONException("JSONObject[" + JSONObject.quote(key) +
+                "] is not a number.");
+        }
+    }
+
+
+    /**
+     * Get the long value of a member of a row. Long columns are read
+     * without boxing.
+     * @param index The row index.
+     * @param key   A key string.
+     * @return The long value.
+     * @throws JSONException If the row has no such member or if the value
+     *  is not a number.
+     */
+    public long getLong(int index, String key) throws JSONException {
+        Column c = column(index, key);
+        try {
+            return c.getLong(index);
+        } catch (Exception e) {
+            throw new JSONException("JSONObject[" + JSONObject.quote(key) +
+                "] is not a number.");
+        }
+    }
+
+
+    /**
+     * Get the number of rows.
+     * @return The length.
+     */
+    @Override
+    public int length() {
+        return this.rows;
+    }
+
+
+    /**
+     * Get a view of a row.
+     * @param index The index must be between 0 and length() - 1.
+     * @return A JSONObject view of the row, or null if there is no row at
+     *  that index.
+     */
+    @Override
+    public Object opt(int index) {
+        return index < 0 || index >= this.rows ? null : new Row(index);
+    }
+
+
+    /**
+     * Get the value of a member of a row without making a view.
+     * @param index The row index.
+     * @param key   A key string.
+     * @return The value, or null if there is none.
+     */
+    public Object opt(int index, String key) {
+        if (index < 0 || index >= this.rows || key == null) {
+            return null;
+        }
+        Column c = this.columns.get(key);
+        return c != null && c.present.get(index) ? c.get(index) : null;
+    }
+
+
+    /**
+     * Append a JSONObject as a new row. Its members are copied into the
+     * columns.
+     * @param value A JSONObject.
+     * @return this.
+     * @throws JSONException If the value is not a JSONObject.
+     */
+    @Override
+    public JSONArray put(Object value) {
+        JSONObject jo = row(value);
+        setRow(this.rows, jo);
+        this.rows += 1;
+        return this;
+    }
+
+
+    /**
+     * Put a JSONObject as the row at an index, replacing the row that was
+     * there. The index may not be greater than the length.
+     * @param index The row index.
+     * @param value A JSONObject.
+     * @return this.
+     * @throws JSONException If the index is negative or greater than the
+     *  length, or if the value is not a JSONObject.
+     */
+    @Override
+    public JSONArray put(int index, Object value) throws JSONException {
+        JSONObject jo = row(value);
+        if (index < 0 || index > this.rows) {
+            throw new JSONException("JSONArray[" + index + "] not found.");
+        }
+        if (index == this.rows) {
+            return put(jo);
+        }
+        setRow(index, jo);
+        return this;
+    }
+
+
+    /**
+     * Remove a row. The rows after it move down by one.
+     * @param index The row index.
+     * @return The removed row as a new JSONObject, or null if there was no
+     *  row at that index.
+     */
+    @Override
+    public Object remove(int index) {
+        if (index < 0 || index >= this.rows) {
+            return null;
+        }
+        JSONObject removed = toJSONObject(index);
+        Iterator<Column> i = this.columns.values().iterator();
+        while (i.hasNext()) {
+            Column c = i.next();
+            for (int row = index + 1; row < this.rows; row += 1) {
+                boolean present = c.present.get(row);
+                if (present) {
+                    c.move(row, row - 1);
+                }
+                c.present.set(row - 1, present);
+            }
+            c.present.clear(this.rows - 1);
+        }
+        this.rows -= 1;
+        return removed;
+    }
+
+
+    /**
+     * Copy the rows into a JSONArray of plain JSONObjects.
+     * @return A new JSONArray.
+     */
+    public JSONArray toRows() {
+        JSONArray ja = new JSONArray(this.rows);
+        for (int i = 0; i < this.rows; i += 1) {
+            ja.put(toJSONObject(i));
+        }
+        return ja;
+    }
+
+
+    /**
+     * Get the column of a row member that must be present.
+     */
+    private Column column(int index, String key) throws JSONException {
+        if (index < 0 || index >= this.rows) {
+            throw new JSONException("JSONArray[" + index + "] not found.");
+        }
+        Column c = key == null ? null : this.columns.get(key);
+        if (c == null || !c.present.get(index)) {
+            throw new JSONException("JSONObject[" + JSONObject.quote(key) +
+                    "] not found.");
+        }
+        return c;
+    }
+
+
+    private static JSONObject row(Object value) throws JSONException {
+        if (!(value instanceof JSONObject)) {
+            throw new JSONException(
+                    "A ColumnarJSONArray can only hold JSONObjects.");
+        }
+        return (JSONObject)value;
+    }
+
+
+    /**
+     * Store a member of a row. A null value removes the member. A column
+     * that cannot hold the value is replaced by an object column.
+     */
+    private void set(int row, String key, Object value) throws JSONException {
+        Column c = this.columns.get(key);
+        if (value == null) {
+            if (c != null) {
+                c.present.clear(row);
+            }
+            return;
+        }
+        JSONObject.testValidity(value);
+        if (c == null) {
+            if (value instanceof Integer || value instanceof Long) {
+                c = new LongColumn();
+            } else if (value instanceof Double) {
+                c = new DoubleColumn();
+            } else if (value instanceof Boolean) {
+                c = new BooleanColumn();
+            } else if (value instanceof String) {
+                c = new StringColumn();
+            } else {
+                c = new ObjectColumn();
+            }
+            this.columns.put(key, c);
+        }
+        if (!c.set(row, value)) {
+            c = widen(c, value);
+            this.columns.put(key, c);
+            c.set(row, value);
+        }
+        c.present.set(row);
+    }
+
+
+    /**
+     * Copy the values of a column into another.
+     * @return false if the other column cannot hold one of the values.
+     */
+    private static boolean copy(Column from, Column to) {
+        for (int i = from.present.nextSetBit(0); i >= 0;
+                i = from.present.nextSetBit(i + 1)) {
+            if (!to.set(i, from.get(i))) {
+                return false;
+            }
+            to.present.set(i);
+        }
+        return true;
+    }
+
+
+    /**
+     * Make a column that holds the values of a column and a value that it
+     * cannot hold: a column of doubles when a double joins whole numbers
+     * that are all exact doubles, or else an object column.
+     */
+    private static Column widen(Column c, Object value) {
+        if (c instanceof LongColumn && value instanceof Double) {
+            Column d = new DoubleColumn();
+            if (copy(c, d)) {
+                return d;
+            }
+        }
+        Column o = new ObjectColumn();
+        copy(c, o);
+        return o;
+    }
+
+
+    /**
+     * Replace the members of a row by those of a JSONObject.
+     */
+    private void setRow(int row, JSONObject jo) throws JSONException {
+        if (jo instanceof Row && ((Row)jo).array() == this) {
+            int from = ((Row)jo).row;
+            if (from == row) {
+                return;
+            }
+            jo = toJSONObject(from);
+        }
+        Iterator<Column> i = this.columns.values().iterator();
+        while (i.hasNext()) {
+            i.next().present.clear(row);
+        }
+        Iterator<String> keys = jo.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            set(row, key, jo.opt(key));
+        }
+    }
+
+
+    /**
+     * Copy a row into a plain JSONObject.
+     */
+    private JSONObject toJSONObject(int row) {
+        JSONObject jo = new JSONObject(this.columns.size());
+        Iterator<Map.Entry<String, Column>> i =
+                this.columns.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<String, Column> e = i.next();
+            Column c = e.getValue();
+            if (c.present.get(row)) {
+                jo.map.put(e.getKey(), c.get(row));
+            }
+        }
+        return jo;
+    }
+}
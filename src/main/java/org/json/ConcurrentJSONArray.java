@@ -0,0 +1,86 @@
+package org.json;
+
+import java.io.IOException;
+
+/**
+ * A ConcurrentJSONArray is the JSONArray that a ConcurrentJSONObject keeps
+ * under a key that values are accumulated or appended to. Values are added
+ * in place under the lock of the array, so appending to a hot key takes
+ * constant time instead of copying the array, and threads appending to
+ * different keys do not contend.
+ * <p>
+ * Each method is atomic. The methods that read the whole array, such as
+ * <code>toString</code>, <code>write</code>, <code>equals</code> and
+ * <code>hashCode</code>, work on a snapshot.
+ */
+final class ConcurrentJSONArray extends JSONArray {
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+    }
+
+
+    @Override
+    public synchronized JSONArray detach() {
+        return super.detach();
+    }
+
+
+    @Override
+    public boolean equals(Object object) {
+        return snapshot().equals(object);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return snapshot().hashCode();
+    }
+
+
+    @Override
+    public synchronized int length() {
+        return super.length();
+    }
+
+
+    @Override
+    public synchronized Object opt(int index) {
+        return super.opt(index);
+    }
+
+
+    @Override
+    public synchronized JSONArray put(Object value) {
+        return super.put(value);
+    }
+
+
+    @Override
+    public synchronized JSONArray put(int index, Object value)
+            throws JSONException {
+        return super.put(index, value);
+    }
+
+
+    @Override
+    public synchronized Object remove(int index) {
+        return super.remove(index);
+    }
+
+
+    @Override
+    void serialize(JSONSerializer s) throws IOException {
+        snapshot().serialize(s);
+    }
+
+
+    /**
+     * Make a copy of the values.
+     * @return A new JSONArray which is not shared with other threads.
+     */
+    synchronized JSONArray snapshot() {
+        return shallowCopy();
+    }
+}
@@ -0,0 +1,417 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A ConcurrentJSONObject is a JSONObject that may be shared between threads
+ * without external locking. Its properties are kept in a striped
+ * <code>ConcurrentHashMap</code>, so <code>put</code>, <code>opt</code> and
+ * <code>remove</code> on different keys do not contend with each other.
+ * <p>
+ * The read-modify-write methods <code>increment</code>,
+ * <code>accumulate</code>, <code>append</code> and <code>putOnce</code> are
+ * atomic. The values accumulated or appended under a key are kept in a
+ * thread-safe JSONArray that grows in place, so appending to a hot key does
+ * not copy the array. A JSONArray obtained from such a key keeps growing as
+ * other threads append to it; its <code>toString</code> and
+ * <code>write</code> methods work on a snapshot of it.
+ * <p>
+ * The <code>toString</code> and <code>write</code> methods serialize a
+ * consistent snapshot: all updates that started before the snapshot are
+ * visible, and none that start after it. Use <code>snapshot</code> to obtain
+ * that copy directly.
+ * <p>
+ * Unlike JSONObject, a ConcurrentJSONObject does not preserve the order in
+ * which keys were added.
+ */
+public class ConcurrentJSONObject extends JSONObject {
+
+    /**
+     * The concurrent map where the properties are kept. This is the same
+     * map as the one used by JSONObject.
+     */
+    private final ConcurrentMap<String, Object> values;
+
+    /**
+     * Updates hold the shared read lock, so they proceed concurrently.
+     * Snapshots hold the exclusive write lock, so they see no update
+     * half-way through.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * Construct an empty ConcurrentJSONObject.
+     */
+    public ConcurrentJSONObject() {
+        super();
+        this.values = new ConcurrentHashMap<String, Object>();
+        this.map = this.values;
+    }
+
+
+    /**
+     * Construct a ConcurrentJSONObject holding the members of a JSONObject.
+     * The values are not copied.
+     * @param jo A JSONObject.
+     */
+    public ConcurrentJSONObject(JSONObject jo) {
+        this();
+        Iterator<String> keys = jo.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            this.values.put(key, jo.opt(key));
+        }
+    }
+
+
+    /**
+     * Construct a ConcurrentJSONObject from a source JSON text string.
+     * @param source    A string beginning
+     *  with <code>{</code>&nbsp;<small>(left brace)</small> and ending
+     *  with <code>}</code>&nbsp;<small>(right brace)</small>.
+     * @exception JSONException If there is a syntax error in the source
+     *  string or a duplicated key.
+     */
+    public ConcurrentJSONObject(String source) throws JSONException {
+        this(new JSONObject(source));
+    }
+
+
+    /**
+     * Accumulate values under a key atomically. If there is already a
+     * value under the key, it is replaced by a thread-safe JSONArray holding
+     * the old value, or the values of the old JSONArray, to which the new
+     * value and the values that follow are added in place. As in JSONObject,
+     * a null value under a key that has no value is not put.
+     * @param key   A key string.
+     * @param value An object to be accumulated under the key.
+     * @return this.
+     * @throws JSONException If the value is an invalid number
+     *  or if the key is null.
+     */
+    @Override
+    public JSONObject accumulate(String key, Object value)
+            throws JSONException {
+        testKey(key);
+        testValidity(value);
+        Lock l = this.lock.readLock();
+        l.lock();
+        try {
+            for (;;) {
+                Object o = this.values.get(key);
+                if (o instanceof ConcurrentJSONArray) {
+                    ((ConcurrentJSONArray)o).put(value);
+                    return this;
+                }
+                if (o == null) {
+                    if (value == null) {
+                        return this;
+                    }
+                    Object v = value instanceof JSONArray ?
+                            new ConcurrentJSONArray().put(value) : value;
+                    if (this.values.putIfAbsent(key, v) == null) {
+                        return this;
+                    }
+                } else {
+                    JSONArray ja = o instanceof JSONArray ?
+                            copy((JSONArray)o) :
+                            new ConcurrentJSONArray().put(o);
+                    if (this.values.replace(key, o, ja.put(value))) {
+                        return this;
+                    }
+                }
+            }
+        } finally {
+            l.unlock();
+        }
+    }
+
+
+    /**
+     * Append values to the array under a key atomically. The values are
+     * added in place to a thread-safe JSONArray. A JSONArray that was put
+     * under the key is replaced by a thread-safe copy the first time.
+     * @param key   A key string.
+     * @param value An object to be accumulated under the key.
+     * @return this.
+     * @throws JSONException If the key is null or if the current value
+     *  associated with the key is not a JSONArray.
+     */
+    @Override
+    public JSONObject append(String key, Object value) throws JSONException {
+        testKey(key);
+        testValidity(value);
+        Lock l = this.lock.readLock();
+        l.lock();
+        try {
+            for (;;) {
+                Object o = this.values.get(key);
+                if (o instanceof ConcurrentJSONArray) {
+                    ((ConcurrentJSONArray)o).put(value);
+                    return this;
+                }
+                if (o == null) {
+                    if (this.values.putIfAbsent(key,
+                            new ConcurrentJSONArray().put(value)) == null) {
+                        return this;
+                    }
+                } else if (o instanceof JSONArray) {
+                    if (this.values.replace(key, o,
+                            copy((JSONArray)o).put(value))) {
+                        return this;
+                    }
+                } else {
+                    throw new JSONException("JSONObject[" + key +
+                            "] is not a JSONArray.");
+                }
+            }
+        } finally {
+            l.unlock();
+        }
+    }
+
+
+    /**
+     * Remove all of the members. A concurrent snapshot sees either all of
+     * them or none of them.
+     */
+    @Override
+    public void clear() {
+        Lock l = this.lock.writeLock();
+        l.lock();
+        try {
+            this.values.clear();
+        } finally {
+            l.unlock();
+        }
+    }
+
+
+    /**
+     * Determine if the ConcurrentJSONObject contains a specific key.
+     * @param key   A key string.
+     * @return      true if the key exists in the ConcurrentJSONObject.
+     */
+    @Override
+    public boolean has(String key) {
+        return key != null && this.values.containsKey(key);
+    }
+
+
+    /**
+     * Increment a property atomically. If there is no such property,
+     * create one with a value of 1. If there is such a property, and if
+     * it is an Integer, Long, Double, or Float, then add one to it.
+     * @param key  A key string.
+     * @return this.
+     * @throws JSONException If there is already a property with this name
+     * that is not an Integer, Long, Double, or Float.
+     */
+    @Override
+    public JSONObject increment(String key) throws JSONException {
+        testKey(key);
+        Lock l = this.lock.readLock();
+        l.lock();
+        try {
+            for (;;) {
+                Object value = this.values.get(key);
+                if (value == null) {
+                    if (this.values.putIfAbsent(key,
+                            Integer.valueOf(1)) == null) {
+                        return this;
+                    }
+                    continue;
+                }
+                Object next;
+                if (value instanceof Integer) {
+                    next = Integer.valueOf(((Integer)value).intValue() + 1);
+                } else if (value instanceof Long) {
+                    next = Long.valueOf(((Long)value).longValue() + 1);
+                } else if (value instanceof Double) {
+                    next = Double.valueOf(((Double)value).doubleValue() + 1);
+                } else if (value instanceof Float) {
+                    next = Float.valueOf(((Float)value).floatValue() + 1);
+                } else {
+                    throw new JSONException("Unable to increment [" + key + "].");
+                }
+                if (this.values.replace(key, value, next)) {
+                    return this;
+                }
+            }
+        } finally {
+            l.unlock();
+        }
+    }
+
+
+    /**
+     * Put a key/value pair in the ConcurrentJSONObject. If the value is null,
+     * then the key will be removed if it is present.
+     * @param key   A key string.
+     * @param value An object which is the value. It should be of one of these
+     *  types: Boolean, Double, Integer, JSONArray, JSONObject, Long, String,
+     *  or the JSONObject.NULL object.
+     * @return this.
+     * @throws JSONException If the value is non-finite number
+     *  or if the key is null.
+     */
+    @Override
+    public JSONObject put(String key, Object value) throws JSONException {
+        testKey(key);
+        if (value == null) {
+            remove(key);
+            return this;
+        }
+        testValidity(value);
+        Lock l = this.lock.readLock();
+        l.lock();
+        try {
+            this.values.put(key, value);
+        } finally {
+            l.unlock();
+        }
+        return this;
+    }
+
+
+    /**
+     * Put a key/value pair in the ConcurrentJSONObject atomically, but only
+     * if the key and the value are both non-null, and only if there is not
+     * already a member with that name.
+     * @param key   A key string.
+     * @param value An object which is the value.
+     * @return this.
+     * @throws JSONException if the key is a duplicate
+     */
+    @Override
+    public JSONObject putOnce(String key, Object value) throws JSONException {
+        if (key != null && value != null) {
+            testValidity(value);
+            Lock l = this.lock.readLock();
+            l.lock();
+            try {
+                if (this.values.putIfAbsent(key, value) != null) {
+                    throw new JSONException("Duplicate key \"" + key + "\"");
+                }
+            } finally {
+                l.unlock();
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * Remove a name and its value, if present.
+     * @param key The name to be removed.
+     * @return The value that was associated with the name,
+     * or null if there was no value.
+     */
+    @Override
+    public Object remove(String key) {
+        if (key == null) {
+            return null;
+        }
+        Lock l = this.lock.readLock();
+        l.lock();
+        try {
+            return this.values.remove(key);
+        } finally {
+            l.unlock();
+        }
+    }
+
+
+    @Override
+    void serialize(JSONSerializer s) throws IOException {
+        snapshot().serialize(s);
+    }
+
+
+    /**
+     * Make a consistent copy of this ConcurrentJSONObject. No update is
+     * applied while the copy is taken. Nested ConcurrentJSONObjects and the
+     * arrays that values are accumulated in are copied by their own
+     * snapshot.
+     * @return A new JSONObject which is not shared with other threads.
+     */
+    public JSONObject snapshot() {
+        JSONObject jo = new JSONObject();
+        Lock l = this.lock.writeLock();
+        l.lock();
+        try {
+            Iterator<Map.Entry<String, Object>> i =
+                    this.values.entrySet().iterator();
+            while (i.hasNext()) {
+                Map.Entry<String, Object> e = i.next();
+                Object v = e.getValue();
+                if (v instanceof ConcurrentJSONObject) {
+                    v = ((ConcurrentJSONObject)v).snapshot();
+                } else if (v instanceof ConcurrentJSONArray) {
+                    v = ((ConcurrentJSONArray)v).snapshot();
+                }
+                jo.map.put(e.getKey(), v);
+            }
+        } finally {
+            l.unlock();
+        }
+        return jo;
+    }
+
+
+    /**
+     * Make a JSON text of a consistent snapshot of this object.
+     * @return a printable, displayable, portable, transmittable
+     *  representation of the object.
+     */
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+
+    @Override
+    String toString(int indentFactor, int indent) throws JSONException {
+        return snapshot().toString(indentFactor, indent);
+    }
+
+
+    /**
+     * Write a consistent snapshot of this object as JSON text to a writer.
+     * @return The writer.
+     * @throws JSONException
+     */
+    @Override
+    public Writer write(Writer writer) throws JSONException {
+        return snapshot().write(writer);
+    }
+
+
+    /**
+     * Copy the values of a JSONArray into a new thread-safe JSONArray.
+     */
+    private static JSONArray copy(JSONArray ja) {
+        JSONArray result = new ConcurrentJSONArray();
+        int len = ja.length();
+        for (int i = 0; i < len; i += 1) {
+            result.put(ja.opt(i));
+        }
+        return result;
+    }
+
+
+    private static void testKey(String key) throws JSONException {
+        if (key == null) {
+            throw new JSONException("Null key.");
+        }
+    }
+}
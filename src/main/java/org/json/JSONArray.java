@@ -25,12 +25,17 @@ SOFTWARE.
 */
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * A JSONArray is an ordered sequence of values. Its external text form is a
@@ -89,6 +94,13 @@ public class JSONArray {
     private ArrayList<Object> myArrayList;
 
 
+    /**
+     * The kept text of this JSONArray, if <code>cacheText</code> has been
+     * called on it or on a node that holds it.
+     */
+    JSONTextCache cache;
+
+
     /**
      * Construct an empty JSONArray.
      */
@@ -96,6 +108,15 @@ public class JSONArray {
         this.myArrayList = new ArrayList<Object>();
     }
 
+    /**
+     * Construct a JSONArray without a list, for a subclass that keeps its
+     * values elsewhere and overrides every method that uses the list.
+     * @param none Ignored.
+     */
+    JSONArray(Void none) {
+    }
+
+
     /**
      * Construct a JSONArray from a JSONTokener.
      * @param x A JSONTokener
@@ -103,6 +124,44 @@ public class JSONArray {
      */
     public JSONArray(JSONTokener x) throws JSONException {
         this();
+        parse(x);
+    }
+
+
+    /**
+     * Construct an empty JSONArray with room for a number of values.
+     * @param capacity The expected number of values.
+     */
+    public JSONArray(int capacity) {
+        this.myArrayList = new ArrayList<Object>(capacity);
+    }
+
+
+    /**
+     * Add a parsed value. A subclass keeps its values its own way, so it is
+     * given the value through <code>put</code>, with
+     * <code>JSONObject.NULL</code> for a missing value.
+     * @param value The value, or null for a missing value.
+     */
+    private void add(Object value) {
+        if (getClass() != JSONArray.class) {
+            put(value == null ? JSONObject.NULL : value);
+        } else {
+            this.myArrayList.add(value);
+            if (value != null && this.cache != null) {
+                this.cache.changed(this, null, value);
+            }
+        }
+    }
+
+
+    /**
+     * Parse the values of a JSONArray text from a JSONTokener and add them
+     * to this JSONArray.
+     * @param x A JSONTokener
+     * @throws JSONException If there is a syntax error.
+     */
+    void parse(JSONTokener x) throws JSONException {
         char c = x.nextClean();
         char q;
         if (c == '[') {
@@ -119,10 +178,10 @@ public class JSONArray {
         for (;;) {
             if (x.nextClean() == ',') {
                 x.back();
-                this.myArrayList.add(null);
+                add(null);
             } else {
                 x.back();
-                this.myArrayList.add(x.nextValue());
+                add(x.nextValue());
             }
             c = x.nextClean();
             switch (c) {
@@ -203,6 +262,125 @@ public class JSONArray {
     }
 
 
+    /**
+     * Keep the compact JSON text of this JSONArray and of the JSONObjects
+     * and JSONArrays within it once it has been written, so that writing
+     * it again copies the text of the parts that have not changed. See
+     * <code>JSONObject.cacheText</code>.
+     * @return this.
+     */
+    public JSONArray cacheText() {
+        JSONTextCache.enable(this);
+        return this;
+    }
+
+
+    /**
+     * Get the hash code of an immutable JSONArray if it is already known.
+     * @return The hash code, or 0 if it is not known.
+     */
+    int cachedHashCode() {
+        return 0;
+    }
+
+
+    /**
+     * Remove all of the values from this JSONArray. The storage is kept, so
+     * the JSONArray can be refilled without growing again.
+     */
+    public void clear() {
+        if (this.cache != null) {
+            this.cache.cleared(this);
+        }
+        this.myArrayList.clear();
+    }
+
+
+    /**
+     * Make a deep copy of this JSONArray. Nested JSONObjects and JSONArrays
+     * are copied, and the copies are made with room for their values.
+     * Strings, numbers, booleans and <code>JSONObject.NULL</code> are
+     * immutable, so they are shared with the copy. The copy is always a
+     * plain JSONArray, also when this is a subclass or a view.
+     * @return A new JSONArray.
+     */
+    public JSONArray deepCopy() {
+        int len = length();
+        JSONArray ja = new JSONArray(len);
+        for (int i = 0; i < len; i += 1) {
+            ja.myArrayList.add(JSONObject.copyValue(opt(i)));
+        }
+        return ja;
+    }
+
+
+    /**
+     * Replace the JSONStringView values of this JSONArray and of the
+     * JSONObjects and JSONArrays within it by Strings, so that they no longer
+     * refer to the text they were parsed from.
+     * @return this.
+     */
+    public JSONArray detach() {
+        int len = length();
+        for (int i = 0; i < len; i += 1) {
+            Object v = opt(i);
+            if (v instanceof JSONStringView) {
+                this.myArrayList.set(i, v.toString());
+            } else if (v instanceof JSONObject) {
+                ((JSONObject)v).detach();
+            } else if (v instanceof JSONArray) {
+                ((JSONArray)v).detach();
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * Determine if this JSONArray has the same values as another, in the
+     * same order. Values are compared as in <code>JSONObject.equals</code>.
+     * @param object The object to compare with.
+     * @return true if the object is a JSONArray with equal values.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (!(object instanceof JSONArray)) {
+            return false;
+        }
+        JSONArray that = (JSONArray)object;
+        int h = cachedHashCode();
+        int k = that.cachedHashCode();
+        int len = length();
+        if ((h != 0 && k != 0 && h != k) || len != that.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i += 1) {
+            if (!JSONObject.valueEquals(opt(i), that.opt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Add the memory taken by this JSONArray and by the values it holds to
+     * a JSONFootprint. A subclass that keeps its values in another form than
+     * a list of references overrides this to measure that form.
+     * @param f The JSONFootprint.
+     */
+    void footprint(JSONFootprint f) {
+        f.addArray(JSONFootprint.shallowSize(this));
+        int len = length();
+        for (int i = 0; i < len; i += 1) {
+            f.add(opt(i));
+        }
+    }
+
+
     /**
      * Get the object value associated with an index.
      * @param index
@@ -219,6 +397,27 @@ public class JSONArray {
     }
 
 
+    /**
+     * Get the exact decimal value associated with an index. Doubles are
+     * converted from their shortest decimal form.
+     *
+     * @param index The index must be between 0 and length() - 1.
+     * @return      The BigDecimal value.
+     * @throws   JSONException If the key is not found or if the value is not
+     *  a Number object and cannot be converted to a number.
+     */
+    public BigDecimal getBigDecimal(int index) throws JSONException {
+        Object o = get(index);
+        try {
+            return o instanceof Number ? JSONObject.toBigDecimal((Number)o) :
+                new BigDecimal(((CharSequence)o).toString());
+        } catch (Exception e) {
+            throw new JSONException("JSONArray[" + index +
+                "] is not a number.");
+        }
+    }
+
+
     /**
      * Get the boolean value associated with an index.
      * The string values "true" and "false" are converted to boolean.
@@ -231,12 +430,12 @@ public class JSONArray {
     public boolean getBoolean(int index) throws JSONException {
         Object o = get(index);
         if (o.equals(Boolean.FALSE) ||
-                (o instanceof String &&
-                ((String)o).equalsIgnoreCase("false"))) {
+                (o instanceof CharSequence &&
+                o.toString().equalsIgnoreCase("false"))) {
             return false;
         } else if (o.equals(Boolean.TRUE) ||
-                (o instanceof String &&
-                ((String)o).equalsIgnoreCase("true"))) {
+                (o instanceof CharSequence &&
+                o.toString().equalsIgnoreCase("true"))) {
             return true;
         }
         throw new JSONException("JSONArray[" + index + "] is not a Boolean.");
@@ -256,7 +455,7 @@ public class JSONArray {
         try {
             return o instanceof Number ?
                 ((Number)o).doubleValue() :
-                Double.valueOf((String)o).doubleValue();
+                Double.valueOf(((CharSequence)o).toString()).doubleValue();
         } catch (Exception e) {
             throw new JSONException("JSONArray[" + index +
                 "] is not a number.");
@@ -340,6 +539,23 @@ public class JSONArray {
     }
 
 
+    /**
+     * Get a hash code consistent with <code>equals</code>. It is computed
+     * from the values each time, except for immutable JSONArrays, which
+     * keep it.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        int h = 1;
+        int len = length();
+        for (int i = 0; i < len; i += 1) {
+            h = 31 * h + JSONObject.valueHashCode(opt(i));
+        }
+        return h;
+    }
+
+
     /**
      * Determine if the value is null.
      * @param index The index must be between 0 and length() - 1.
@@ -361,12 +577,17 @@ public class JSONArray {
     public String join(String separator) throws JSONException {
         int len = length();
         StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < len; i += 1) {
-            if (i > 0) {
-                sb.append(separator);
+        JSONSerializer s = new JSONSerializer(sb);
+        try {
+            for (int i = 0; i < len; i += 1) {
+                if (i > 0) {
+                    s.write(separator);
+                }
+                s.value(opt(i));
             }
-            sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+            s.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
         }
         return sb.toString();
     }
@@ -569,6 +790,27 @@ public class JSONArray {
     }
 
 
+    /**
+     * Parse a JSONArray text into an existing JSONArray, replacing its
+     * values. The nested JSONObjects and JSONArrays held by the JSONArray
+     * are reused for the nested containers of the text, so a stream of texts
+     * of the same shape can be parsed with few new allocations. References
+     * to the old nested containers must not be kept, because their contents
+     * are overwritten. A subclass such as ColumnarJSONArray is filled
+     * through its <code>put</code> method.
+     * @param x A JSONTokener
+     * @param ja The JSONArray to fill.
+     * @return ja.
+     * @throws JSONException If there is a syntax error.
+     */
+    public static JSONArray parseInto(JSONTokener x, JSONArray ja)
+            throws JSONException {
+        x.recycle(ja);
+        ja.parse(x);
+        return ja;
+    }
+
+
     /**
      * Append a boolean value. This increases the array's length by one.
      *
@@ -653,6 +895,9 @@ public class JSONArray {
      */
     public JSONArray put(Object value) {
         this.myArrayList.add(value);
+        if (this.cache != null) {
+            this.cache.changed(this, null, value);
+        }
         return this;
     }
 
@@ -766,7 +1011,10 @@ public class JSONArray {
             throw new JSONException("JSONArray[" + index + "] not found.");
         }
         if (index < length()) {
-            this.myArrayList.set(index, value);
+            Object old = this.myArrayList.set(index, value);
+            if (this.cache != null) {
+                this.cache.changed(this, old, value);
+            }
         } else {
             while (index != length()) {
                 put(JSONObject.NULL);
@@ -786,10 +1034,55 @@ public class JSONArray {
     public Object remove(int index) {
         Object o = opt(index);
         this.myArrayList.remove(index);
+        if (this.cache != null) {
+            this.cache.changed(this, o, null);
+        }
         return o;
     }
 
 
+    /**
+     * Write the JSON text of this JSONArray to a JSONSerializer. A plain
+     * JSONArray walks its list directly; subclasses are walked through
+     * <code>length</code> and <code>opt</code>.
+     * @param s The JSONSerializer.
+     */
+    void serialize(JSONSerializer s) throws IOException {
+        if (this.cache != null && !s.isPretty()) {
+            s.write(this.cache.get(this));
+        } else if (getClass() == JSONArray.class) {
+            if (s.isParallel(this.myArrayList.size())) {
+                new JSONParallelWriter(s.getExecutor(), this).write(s);
+            } else {
+                s.elements(this.myArrayList);
+            }
+        } else {
+            s.elements(this);
+        }
+    }
+
+
+    /**
+     * Make a shallow copy of this JSONArray. The copy has its own list of
+     * values, but the values are shared: a nested JSONObject or JSONArray
+     * is the same instance in both. The copy is always a plain JSONArray.
+     * @return A new JSONArray.
+     */
+    public JSONArray shallowCopy() {
+        if (getClass() == JSONArray.class) {
+            JSONArray ja = new JSONArray(0);
+            ja.myArrayList = new ArrayList<Object>(this.myArrayList);
+            return ja;
+        }
+        int len = length();
+        JSONArray ja = new JSONArray(len);
+        for (int i = 0; i < len; i += 1) {
+            ja.myArrayList.add(opt(i));
+        }
+        return ja;
+    }
+
+
     /**
      * Produce a JSONObject by combining a JSONArray of names with the values
      * of this JSONArray.
@@ -824,7 +1117,14 @@ public class JSONArray {
      */
     @Override
     public String toString() {
-            return '[' + join(",") + ']';
+        if (this.cache != null) {
+            try {
+                return this.cache.get(this);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+        }
+        return JSONSerializer.toString(this);
     }
 
 
@@ -855,35 +1155,7 @@ public class JSONArray {
      * @throws JSONException
      */
     String toString(int indentFactor, int indent) throws JSONException {
-        int len = length();
-        if (len == 0) {
-            return "[]";
-        }
-        int i;
-        StringBuilder sb = new StringBuilder("[");
-        if (len == 1) {
-            sb.append(JSONObject.valueToString(this.myArrayList.get(0),
-                    indentFactor, indent));
-        } else {
-            int newindent = indent + indentFactor;
-            sb.append('\n');
-            for (i = 0; i < len; i += 1) {
-                if (i > 0) {
-                    sb.append(",\n");
-                }
-                for (int j = 0; j < newindent; j += 1) {
-                    sb.append(' ');
-                }
-                sb.append(JSONObject.valueToString(this.myArrayList.get(i),
-                        indentFactor, newindent));
-            }
-            sb.append('\n');
-            for (i = 0; i < indent; i += 1) {
-                sb.append(' ');
-            }
-        }
-        sb.append(']');
-        return sb.toString();
+        return JSONSerializer.toString(this, indentFactor, indent);
     }
 
 
@@ -898,29 +1170,155 @@ public class JSONArray {
      */
     public Writer write(Writer writer) throws JSONException {
         try {
-            boolean b = false;
-            int     len = length();
+            JSONSerializer s = new JSONSerializer(writer);
+            serialize(s);
+            s.flush();
+            return writer;
+        } catch (IOException e) {
+           throw new JSONException(e);
+        }
+    }
 
-            writer.write('[');
 
-            for (int i = 0; i < len; i += 1) {
-                if (b) {
-                    writer.write(',');
-                }
-                Object v = this.myArrayList.get(i);
-                if (v instanceof JSONObject) {
-                    ((JSONObject)v).write(writer);
-                } else if (v instanceof JSONArray) {
-                    ((JSONArray)v).write(writer);
-                } else {
-                    writer.write(JSONObject.valueToString(v));
-                }
-                b = true;
-            }
-            writer.write(']');
+    /**
+     * Write the contents of the JSONArray as pretty printed JSON text to a
+     * writer. The text is indented as it is written, so no strings are made
+     * for the nested values.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param writer The writer.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation.
+     * @param sortKeys true to write the keys of objects in sorted order, as
+     *  <code>toString(int)</code> does, or false to keep their order.
+     * @return The writer.
+     * @throws JSONException If the array contains an invalid number.
+     */
+    public Writer write(Writer writer, int indentFactor, boolean sortKeys)
+            throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(writer);
+            s.setIndent(indentFactor, 0, sortKeys);
+            serialize(s);
+            s.flush();
             return writer;
         } catch (IOException e) {
-           throw new JSONException(e);
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Write the contents of the JSONArray as JSON text to a ByteBuffer,
+     * encoded as UTF-8. The text starts at the position of the buffer, and
+     * the position is left after it.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param buffer The ByteBuffer.
+     * @return The ByteBuffer.
+     * @throws JSONException If there is not enough room left in the buffer.
+     *  Part of the text may have been written.
+     */
+    public ByteBuffer write(ByteBuffer buffer) throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(buffer);
+            serialize(s);
+            s.flush();
+            return buffer;
+        } catch (BufferOverflowException e) {
+            throw new JSONException("Not enough room in the buffer.");
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Write the contents of the JSONArray as JSON text to an OutputStream,
+     * encoded as UTF-8. The text is encoded block by block, so no String or
+     * byte array of the whole text is made. The stream is not flushed.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param out The OutputStream.
+     * @return The OutputStream.
+     * @throws JSONException If the stream cannot be written.
+     */
+    public OutputStream write(OutputStream out) throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(out);
+            serialize(s);
+            s.flush();
+            return out;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Write the contents of the JSONArray as JSON text to an OutputStream,
+     * encoded as UTF-8, using the threads of an ExecutorService. The
+     * elements or members of each large array or object, at the top or
+     * nested, are split into chunks that are written into separate buffers
+     * at the same time, and the buffers are written to the stream in order,
+     * so the text is the same as that of <code>write(OutputStream)</code>.
+     * The JSONArray must not be changed until this method returns. Small
+     * arrays and objects, subclasses and values with <code>cacheText</code>
+     * are written by the calling thread.
+     * <p>
+     * The calling thread waits for the chunks. Do not call this method from
+     * a task of the same executor when it has a bounded number of threads:
+     * if all of them are waiting, no thread is left to write the chunks,
+     * and the write deadlocks.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param out The OutputStream.
+     * @param executor The ExecutorService that runs the chunks, or null to
+     *  write by the calling thread.
+     * @return The OutputStream.
+     * @throws JSONException If the stream cannot be written.
+     */
+    public OutputStream write(OutputStream out, ExecutorService executor)
+            throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(out);
+            s.setExecutor(executor);
+            serialize(s);
+            s.flush();
+            return out;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Write the contents of the JSONArray as JSON text to a writer, using the
+     * threads of an ExecutorService, as <code>write(OutputStream,
+     * ExecutorService)</code> does.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param writer The writer.
+     * @param executor The ExecutorService that runs the chunks, or null to
+     *  write by the calling thread.
+     * @return The writer.
+     * @throws JSONException If the writer cannot be written.
+     */
+    public Writer write(Writer writer, ExecutorService executor)
+            throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(writer);
+            s.setExecutor(executor);
+            serialize(s);
+            s.flush();
+            return writer;
+        } catch (IOException e) {
+            throw new JSONException(e);
         }
     }
 }
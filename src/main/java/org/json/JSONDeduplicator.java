@@ -0,0 +1,250 @@
+package org.json;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A JSONDeduplicator replaces structurally equal parts of JSON documents by
+ * a single shared instance. Equal strings and numbers are shared, and so are
+ * JSONObjects with the same members in the same order and JSONArrays with
+ * the same elements. Documents that repeat the same nested objects many
+ * times then take far less memory.
+ * <p>
+ * Documents are canonicalized bottom up, so by the time a JSONObject or
+ * JSONArray is looked up its members are already shared instances and can
+ * be compared by identity. The structural hash of every shared container is
+ * kept, so it is computed only once.
+ * <p>
+ * A JSONDeduplicator can be used after parsing with
+ * <code>canonicalize</code>, or during parsing by giving it to
+ * <code>JSONTokener.setDeduplicator</code>. The same JSONDeduplicator can
+ * be used for many documents, so that they share their common parts.
+ * <p>
+ * <b>Warning:</b> the shared instances belong to every document that uses
+ * them, so a document that has been canonicalized must be treated as
+ * read-only. Modifying one of its JSONObjects or JSONArrays modifies all of
+ * the places where it occurs. A JSONDeduplicator is not thread-safe.
+ * Subclasses of JSONObject and JSONArray, such as ConcurrentJSONObject, are
+ * never shared.
+ */
+public final class JSONDeduplicator {
+
+    /**
+     * The shared strings and numbers.
+     */
+    private final Map<Object, Object> leaves = new HashMap<Object, Object>();
+
+    /**
+     * The shared containers, keyed by their structure.
+     */
+    private final Map<Node, Object> containers = new HashMap<Node, Object>();
+
+    /**
+     * The structural hash of every shared container.
+     */
+    private final Map<Object, Integer> hashes =
+            new IdentityHashMap<Object, Integer>();
+
+
+    /**
+     * A lookup key that compares containers by structure.
+     */
+    private static final class Node {
+        private final Object value;
+        private final int hash;
+
+        Node(Object value, int hash) {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Node)) {
+                return false;
+            }
+            Node that = (Node)object;
+            return this.hash == that.hash &&
+                    shallowEquals(this.value, that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+
+    /**
+     * Replace a value by its shared instance. If the value is a JSONObject
+     * or JSONArray, its members are replaced by their shared instances
+     * first.
+     * @param value A value.
+     * @return The shared instance, which may be the value itself.
+     */
+    public Object canonicalize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Class<?> c = value.getClass();
+        if (c == JSONObject.class) {
+            return canonicalize((JSONObject)value);
+        }
+        if (c == JSONArray.class) {
+            return canonicalize((JSONArray)value);
+        }
+        if (value instanceof String || value instanceof Number) {
+            Object shared = this.leaves.get(value);
+            if (shared == null) {
+                this.leaves.put(value, value);
+                return value;
+            }
+            return shared;
+        }
+        return value;
+    }
+
+
+    private Object canonicalize(JSONObject jo) {
+        if (this.hashes.containsKey(jo)) {
+            return jo;
+        }
+        int h = 1;
+        Iterator<Map.Entry<String, Object>> i = jo.map.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<String, Object> e = i.next();
+            Object v = canonicalize(e.getValue());
+            if (v != e.getValue()) {
+                e.setValue(v);
+            }
+            h = 31 * h + (e.getKey().hashCode() ^ hashOf(v));
+        }
+        return share(jo, h);
+    }
+
+
+    private Object canonicalize(JSONArray ja) {
+        if (this.hashes.containsKey(ja)) {
+            return ja;
+        }
+        int h = 2;
+        int len = ja.length();
+        for (int i = 0; i < len; i += 1) {
+            Object o = ja.opt(i);
+            Object v = canonicalize(o);
+            if (v != o) {
+                ja.put(i, v);
+            }
+            h = 31 * h + hashOf(v);
+        }
+        return share(ja, h);
+    }
+
+
+    /**
+     * Get the shared instance of a container whose members are already
+     * shared, registering the container if it is the first of its kind.
+     */
+    private Object share(Object container, int hash) {
+        Node node = new Node(container, hash);
+        Object shared = this.containers.get(node);
+        if (shared != null) {
+            return shared;
+        }
+        this.containers.put(node, container);
+        this.hashes.put(container, Integer.valueOf(hash));
+        return container;
+    }
+
+
+    private int hashOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer h = this.hashes.get(value);
+        if (h != null) {
+            return h.intValue();
+        }
+        return value instanceof JSONObject || value instanceof JSONArray ?
+                System.identityHashCode(value) : value.hashCode();
+    }
+
+
+    /**
+     * Forget all shared instances. Documents already canonicalized keep
+     * sharing their parts.
+     */
+    public void clear() {
+        this.leaves.clear();
+        this.containers.clear();
+        this.hashes.clear();
+    }
+
+
+    /**
+     * Get the number of distinct values known to this JSONDeduplicator.
+     * @return The number of shared strings, numbers and containers.
+     */
+    public int size() {
+        return this.leaves.size() + this.containers.size();
+    }
+
+
+    /**
+     * Compare two containers whose members are shared instances.
+     * Containers among the members are compared by identity, other values
+     * by class and equals. Object members must appear in the same order.
+     */
+    private static boolean shallowEquals(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a instanceof JSONObject && b instanceof JSONObject) {
+            JSONObject x = (JSONObject)a;
+            JSONObject y = (JSONObject)b;
+            if (x.length() != y.length()) {
+                return false;
+            }
+            Iterator<Map.Entry<String, Object>> i = x.map.entrySet().iterator();
+            Iterator<Map.Entry<String, Object>> j = y.map.entrySet().iterator();
+            while (i.hasNext()) {
+                Map.Entry<String, Object> e = i.next();
+                Map.Entry<String, Object> f = j.next();
+                if (!e.getKey().equals(f.getKey()) ||
+                        !same(e.getValue(), f.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof JSONArray && b instanceof JSONArray) {
+            JSONArray x = (JSONArray)a;
+            JSONArray y = (JSONArray)b;
+            int len = x.length();
+            if (len != y.length()) {
+                return false;
+            }
+            for (int i = 0; i < len; i += 1) {
+                if (!same(x.opt(i), y.opt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+
+    private static boolean same(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a instanceof JSONObject ||
+                a instanceof JSONArray) {
+            return false;
+        }
+        return a.getClass() == b.getClass() && a.equals(b);
+    }
+}
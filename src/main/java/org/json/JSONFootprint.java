@@ -0,0 +1,293 @@
+package org.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A JSONFootprint is an estimate of the heap memory retained by a JSON
+ * value, broken down by the kind of object that takes it. Use
+ * <code>JSONFootprint.of</code> to measure a JSONObject or JSONArray, for
+ * example to weigh cache entries by their real cost.
+ * <p>
+ * The estimate assumes a 64-bit JVM with compressed references, and counts
+ * each shared instance only once. It does not include the text that
+ * JSONStringViews refer to, or Booleans and small Integers, which are shared
+ * by the whole JVM. A JSONArray subclass that keeps its values in another
+ * form, such as ColumnarJSONArray or SpillableJSONArray, is measured in that
+ * form.
+ */
+public final class JSONFootprint {
+
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+
+    /**
+     * The size of a LinkedHashMap without its table.
+     */
+    private static final int LINKED_HASH_MAP = 56;
+
+    /**
+     * The size of an entry of a LinkedHashMap.
+     */
+    private static final int LINKED_ENTRY = 40;
+
+    /**
+     * The size of an ArrayList without its array.
+     */
+    private static final int ARRAY_LIST = 24;
+
+    private long arrays;
+    private long numbers;
+    private long objects;
+    private long other;
+    private long strings;
+
+    /**
+     * The instances counted so far.
+     */
+    private final Map<Object, Object> seen =
+            new IdentityHashMap<Object, Object>();
+
+
+    private JSONFootprint() {
+    }
+
+
+    /**
+     * Estimate the memory retained by a value and everything it holds.
+     * @param value A JSONObject, JSONArray or other JSON value.
+     * @return The JSONFootprint.
+     */
+    public static JSONFootprint of(Object value) {
+        JSONFootprint f = new JSONFootprint();
+        f.add(value);
+        return f;
+    }
+
+
+    /**
+     * Add a value and everything it holds, unless it has been counted.
+     * @param value A JSON value.
+     */
+    void add(Object value) {
+        if (value == null || value instanceof Boolean ||
+                value == JSONObject.NULL || this.seen.put(value, value) != null) {
+            return;
+        }
+        if (value instanceof JSONArray) {
+            ((JSONArray)value).footprint(this);
+            return;
+        }
+        long size = shallowSize(value);
+        if (value instanceof JSONObject) {
+            this.objects += size;
+            JSONObject jo = (JSONObject)value;
+            Iterator<String> keys = jo.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                add(key);
+                add(jo.opt(key));
+            }
+        } else if (value instanceof CharSequence) {
+            this.strings += size;
+        } else if (value instanceof Number) {
+            this.numbers += size;
+        } else {
+            this.other += size;
+        }
+    }
+
+
+    /**
+     * Add the bytes taken by a JSONArray itself, not counting its values.
+     * @param size The number of bytes.
+     */
+    void addArray(long size) {
+        this.arrays += size;
+    }
+
+
+    /**
+     * Round a size up to the 8 byte alignment of objects.
+     */
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+
+    /**
+     * Estimate the size of an array.
+     * @param width The size of an element: 4 for a reference or an int, 8
+     *  for a long or a double.
+     * @param length The length of the array.
+     */
+    static long arraySize(int width, int length) {
+        return align(ARRAY_HEADER + (long)width * length);
+    }
+
+
+    /**
+     * Estimate the size of a BitSet and of its words.
+     */
+    static long bitSetSize(BitSet bits) {
+        return objectSize(1, 4 + 1) + arraySize(8, bits.size() / 64);
+    }
+
+
+    /**
+     * Estimate the size of a LinkedHashMap or HashMap with its table and
+     * entries, not counting the keys and values.
+     * @param n The number of entries.
+     */
+    static long mapSize(int n) {
+        int table = 16;
+        while (table * 3 < n * 4) {
+            table *= 2;
+        }
+        return LINKED_HASH_MAP + align(ARRAY_HEADER + (long)REFERENCE * table) +
+                (long)LINKED_ENTRY * n;
+    }
+
+
+    /**
+     * Estimate the size of an object with some fields.
+     * @param references The number of reference fields.
+     * @param bytes The number of bytes of primitive fields.
+     */
+    static long objectSize(int references, int bytes) {
+        return align(HEADER + REFERENCE * references + bytes);
+    }
+
+
+    /**
+     * Estimate the size of a String of a given length.
+     */
+    static long stringSize(int length) {
+        return align(HEADER + 3 * REFERENCE) + align(ARRAY_HEADER + 2L * length);
+    }
+
+
+    /**
+     * Estimate the memory taken by a value itself, not counting the values
+     * that it holds.
+     * @param value A JSON value.
+     * @return The estimated number of bytes.
+     */
+    static long shallowSize(Object value) {
+        if (value == null || value instanceof Boolean ||
+                value == JSONObject.NULL) {
+            return 0;
+        }
+        if (value instanceof JSONObject) {
+            return objectSize(2, 0) + mapSize(((JSONObject)value).length());
+        }
+        if (value instanceof JSONArray) {
+            return objectSize(2, 0) + ARRAY_LIST +
+                    arraySize(REFERENCE, Math.max(((JSONArray)value).length(), 10));
+        }
+        if (value instanceof String) {
+            return stringSize(((String)value).length());
+        }
+        if (value instanceof JSONStringView) {
+            return align(HEADER + 4 * REFERENCE);
+        }
+        if (value instanceof JSONFragment) {
+            return align(HEADER + 2 * 4 + 2 * REFERENCE) +
+                    align(ARRAY_HEADER + ((JSONFragment)value).footprint());
+        }
+        if (value instanceof Integer) {
+            int i = ((Integer)value).intValue();
+            return i >= -128 && i <= 127 ? 0 : 16;
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return 24;
+        }
+        if (value instanceof JSONNumber) {
+            return align(HEADER + 2 * REFERENCE) +
+                    stringSize(value.toString().length());
+        }
+        if (value instanceof BigInteger) {
+            return align(HEADER + 5 * 4 + REFERENCE) +
+                    align(ARRAY_HEADER + ((BigInteger)value).bitLength() / 8 + 4);
+        }
+        if (value instanceof BigDecimal) {
+            return align(HEADER + 3 * 4 + 8 + 2 * REFERENCE) +
+                    shallowSize(((BigDecimal)value).unscaledValue());
+        }
+        return align(HEADER + 8);
+    }
+
+
+    /**
+     * Get the bytes taken by JSONArrays and their lists.
+     * @return The number of bytes.
+     */
+    public long getArrays() {
+        return this.arrays;
+    }
+
+
+    /**
+     * Get the bytes taken by numbers.
+     * @return The number of bytes.
+     */
+    public long getNumbers() {
+        return this.numbers;
+    }
+
+
+    /**
+     * Get the bytes taken by JSONObjects and their maps.
+     * @return The number of bytes.
+     */
+    public long getObjects() {
+        return this.objects;
+    }
+
+
+    /**
+     * Get the bytes taken by values of other types.
+     * @return The number of bytes.
+     */
+    public long getOther() {
+        return this.other;
+    }
+
+
+    /**
+     * Get the bytes taken by keys and string values.
+     * @return The number of bytes.
+     */
+    public long getStrings() {
+        return this.strings;
+    }
+
+
+    /**
+     * Get the total estimated number of bytes.
+     * @return The number of bytes.
+     */
+    public long getTotal() {
+        return this.objects + this.arrays + this.strings + this.numbers +
+                this.other;
+    }
+
+
+    /**
+     * Make a printable summary of the estimate.
+     * @return A string such as
+     *  <code>{"total":1024,"objects":512,...}</code>.
+     */
+    @Override
+    public String toString() {
+        return "{\"total\":" + getTotal() + ",\"objects\":" + this.objects +
+                ",\"arrays\":" + this.arrays + ",\"strings\":" + this.strings +
+                ",\"numbers\":" + this.numbers + ",\"other\":" + this.other +
+                "}";
+    }
+}
@@ -0,0 +1,159 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A JSONFragment is a value that holds JSON text which is already known to
+ * be valid, either as characters or as UTF-8 bytes. The serializers copy
+ * the text into the output as it is, without parsing or escaping it, so a
+ * document that was received or cached as text can be put into a larger
+ * one without building it again. When the output is UTF-8, the bytes of a
+ * UTF-8 fragment are copied without being decoded. A fragment is copied as
+ * it is when pretty printing too.
+ * <p>
+ * The text is not checked. Use <code>JSONTokener.nextFragment</code> to
+ * check it, or <code>setFragmentKeys</code> to keep the values of some
+ * members as fragments while parsing. The array given to a constructor is
+ * not copied, so it must not be changed while the fragment is in use.
+ */
+public final class JSONFragment implements JSONString {
+
+    /**
+     * The text as characters, or null if it is held as bytes.
+     */
+    private final char[] chars;
+
+    /**
+     * The text as UTF-8 bytes, or null if it is held as characters.
+     */
+    private final byte[] bytes;
+
+    private final int offset;
+
+    private final int length;
+
+
+    /**
+     * Construct a fragment from a range of characters.
+     * @param chars The array holding the JSON text.
+     * @param offset The index of the first character.
+     * @param length The number of characters.
+     */
+    public JSONFragment(char[] chars, int offset, int length) {
+        if (offset < 0 || length < 0 || length > chars.length - offset) {
+            throw new IndexOutOfBoundsException("Bad range [" + offset +
+                    ", " + (offset + length) + ")");
+        }
+        this.chars = chars;
+        this.bytes = null;
+        this.offset = offset;
+        this.length = length;
+    }
+
+
+    /**
+     * Construct a fragment from a range of UTF-8 bytes.
+     * @param bytes The array holding the JSON text as UTF-8.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     */
+    public JSONFragment(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException("Bad range [" + offset +
+                    ", " + (offset + length) + ")");
+        }
+        this.chars = null;
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+
+    /**
+     * Construct a fragment from UTF-8 bytes.
+     * @param bytes The JSON text as UTF-8.
+     */
+    public JSONFragment(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Construct a fragment from characters.
+     * @param chars The JSON text.
+     */
+    public JSONFragment(char[] chars) {
+        this(chars, 0, chars.length);
+    }
+
+
+    /**
+     * Construct a fragment from a string.
+     * @param json The JSON text.
+     */
+    public JSONFragment(String json) {
+        this(json.toCharArray());
+    }
+
+
+    /**
+     * Determine if two fragments hold the same text.
+     * @param other The object to compare with.
+     * @return true if the other object is a JSONFragment with the same text.
+     */
+    public boolean equals(Object other) {
+        return other instanceof JSONFragment &&
+                toJSONString().equals(((JSONFragment)other).toJSONString());
+    }
+
+
+    /**
+     * Get the number of characters or bytes that the text takes.
+     */
+    int footprint() {
+        return this.chars != null ? 2 * this.length : this.length;
+    }
+
+
+    public int hashCode() {
+        return toJSONString().hashCode();
+    }
+
+
+    /**
+     * Get the JSON text.
+     * @return The text as a String.
+     */
+    public String toJSONString() {
+        if (this.chars != null) {
+            return new String(this.chars, this.offset, this.length);
+        }
+        try {
+            return new String(this.bytes, this.offset, this.length, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Get the JSON text.
+     * @return The text as a String.
+     */
+    public String toString() {
+        return toJSONString();
+    }
+
+
+    /**
+     * Copy the text into a serializer.
+     */
+    void write(JSONSerializer s) throws IOException {
+        if (this.chars != null) {
+            s.write(this.chars, this.offset, this.length);
+        } else {
+            s.writeUTF8(this.bytes, this.offset, this.length);
+        }
+    }
+}
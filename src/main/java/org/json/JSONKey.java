@@ -0,0 +1,152 @@
+package org.json;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A JSONKey is a handle for a member name that is looked up often. Make it
+ * once, for example in a static final field, and use its <code>get</code>,
+ * <code>opt</code>, <code>put</code> and <code>has</code> methods to reach
+ * the member of a JSONObject:
+ * <pre>
+ * static final JSONKey TYPE = JSONKey.valueOf("type");
+ * ...
+ * String type = TYPE.getString(jo);
+ * </pre>
+ * <p>
+ * There is a single JSONKey for each name, and its name is a single String
+ * instance whose hash code is already computed. When a JSONTokener has
+ * <code>setInternKeys</code> enabled, the keys it parses are replaced by
+ * that same instance, so finding the member only needs an identity check
+ * instead of comparing the characters.
+ */
+public final class JSONKey {
+
+    /**
+     * All of the JSONKeys that have been made, by name.
+     */
+    private static final ConcurrentMap<String, JSONKey> KEYS =
+            new ConcurrentHashMap<String, JSONKey>();
+
+    /**
+     * The name.
+     */
+    private final String name;
+
+
+    private JSONKey(String name) {
+        this.name = name;
+        name.hashCode();
+    }
+
+
+    /**
+     * Get the JSONKey for a name.
+     * @param name A key string.
+     * @return The JSONKey. The same JSONKey is returned for equal names.
+     * @throws JSONException If the name is null.
+     */
+    public static JSONKey valueOf(String name) throws JSONException {
+        if (name == null) {
+            throw new JSONException("Null key.");
+        }
+        JSONKey key = KEYS.get(name);
+        if (key == null) {
+            key = new JSONKey(name);
+            JSONKey old = KEYS.putIfAbsent(name, key);
+            if (old != null) {
+                key = old;
+            }
+        }
+        return key;
+    }
+
+
+    /**
+     * Get the value of this member of a JSONObject.
+     * @param jo A JSONObject.
+     * @return The value.
+     * @throws JSONException If the member is not found.
+     */
+    public Object get(JSONObject jo) throws JSONException {
+        return jo.get(this.name);
+    }
+
+
+    /**
+     * Get the string value of this member of a JSONObject.
+     * @param jo A JSONObject.
+     * @return A string which is the value.
+     * @throws JSONException If the member is not found.
+     */
+    public String getString(JSONObject jo) throws JSONException {
+        return jo.getString(this.name);
+    }
+
+
+    /**
+     * Determine if a JSONObject has this member.
+     * @param jo A JSONObject.
+     * @return true if the member exists.
+     */
+    public boolean has(JSONObject jo) {
+        return jo.has(this.name);
+    }
+
+
+    /**
+     * Get the shared instance of a name if a JSONKey has been made for it.
+     * Names without a JSONKey are returned unchanged, so parsing untrusted
+     * text does not make the set of shared names grow.
+     * @param name A key string.
+     * @return The name of the JSONKey, or the name itself.
+     */
+    static String intern(String name) {
+        JSONKey key = KEYS.get(name);
+        return key == null ? name : key.name;
+    }
+
+
+    /**
+     * Get the value of this member of a JSONObject, or null.
+     * @param jo A JSONObject.
+     * @return The value, or null if there is none.
+     */
+    public Object opt(JSONObject jo) {
+        return jo.opt(this.name);
+    }
+
+
+    /**
+     * Get the string value of this member of a JSONObject, or an empty
+     * string if there is none.
+     * @param jo A JSONObject.
+     * @return A string which is the value.
+     */
+    public String optString(JSONObject jo) {
+        return jo.optString(this.name);
+    }
+
+
+    /**
+     * Put this member in a JSONObject. If the value is null, the member is
+     * removed.
+     * @param jo A JSONObject.
+     * @param value The value.
+     * @return The JSONObject.
+     * @throws JSONException If the value is a non-finite number.
+     */
+    public JSONObject put(JSONObject jo, Object value) throws JSONException {
+        return jo.put(this.name, value);
+    }
+
+
+    /**
+     * Get the name.
+     * @return The name.
+     */
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -357,7 +357,7 @@ public class JSONML {
                 e = ja.get(i);
                 i += 1;
                 if (e != null) {
-                    if (e instanceof String) {
+                    if (e instanceof CharSequence) {
                         sb.append(XML.escape(e.toString()));
                     } else if (e instanceof JSONObject) {
                         sb.append(toString((JSONObject)e));
@@ -436,7 +436,7 @@ public class JSONML {
             for (i = 0; i < len; i += 1) {
                 e = ja.get(i);
                 if (e != null) {
-                    if (e instanceof String) {
+                    if (e instanceof CharSequence) {
                         sb.append(XML.escape(e.toString()));
                     } else if (e instanceof JSONObject) {
                         sb.append(toString((JSONObject)e));
@@ -0,0 +1,206 @@
+package org.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * A JSONNumber is a number kept in the form in which it appeared in a JSON
+ * text. The digits are converted only when one of the <code>Number</code>
+ * value methods is called, and the number is written back exactly as it was
+ * read, so no precision is lost when a value is passed through unchanged.
+ * <p>
+ * JSONNumbers are produced by a JSONTokener when lazy numbers are enabled
+ * with <code>setLazyNumbers</code>.
+ */
+public final class JSONNumber extends Number {
+
+    private static final long serialVersionUID = 0;
+
+    /**
+     * The original text of the number.
+     */
+    private final String text;
+
+    /**
+     * The converted value, made on first use.
+     */
+    private transient Number value;
+
+
+    private JSONNumber(String text) {
+        this.text = text;
+    }
+
+
+    /**
+     * Make a JSONNumber from its JSON text.
+     * @param text A string that follows the JSON number syntax.
+     * @return A JSONNumber.
+     * @throws JSONException If the text is not a JSON number.
+     */
+    public static JSONNumber valueOf(String text) throws JSONException {
+        JSONNumber n = tryParse(text);
+        if (n == null) {
+            throw new JSONException("Not a JSON number: " + text);
+        }
+        return n;
+    }
+
+
+    /**
+     * Make a JSONNumber from a string, or return null if the string is not
+     * a JSON number.
+     */
+    static JSONNumber tryParse(String text) {
+        return isNumber(text) ? new JSONNumber(text) : null;
+    }
+
+
+    /**
+     * Determine if a string follows the strict JSON number syntax:
+     * an optional minus, an integer part without leading zeros, an optional
+     * fraction and an optional exponent.
+     * @param s A string.
+     * @return true if the string is a JSON number.
+     */
+    public static boolean isNumber(String s) {
+        int len = s.length();
+        int i = 0;
+        if (i < len && s.charAt(i) == '-') {
+            i += 1;
+        }
+        if (i >= len) {
+            return false;
+        }
+        if (s.charAt(i) == '0') {
+            i += 1;
+        } else {
+            int start = i;
+            i = skipDigits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < len && s.charAt(i) == '.') {
+            int start = i + 1;
+            i = skipDigits(s, start);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < len && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i += 1;
+            if (i < len && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i += 1;
+            }
+            int start = i;
+            i = skipDigits(s, start);
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == len;
+    }
+
+
+    private static int skipDigits(String s, int i) {
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i += 1;
+        }
+        return i;
+    }
+
+
+    /**
+     * Determine if the number is written without a fraction or exponent.
+     */
+    private boolean isIntegral() {
+        return this.text.indexOf('.') < 0 && this.text.indexOf('e') < 0 &&
+                this.text.indexOf('E') < 0;
+    }
+
+
+    /**
+     * Get the converted value. Integral numbers become an Integer, a Long or
+     * a BigInteger, whichever is the smallest that holds them. Other numbers
+     * become a Double.
+     * @return The converted value.
+     */
+    private Number value() {
+        Number n = this.value;
+        if (n == null) {
+            if (isIntegral()) {
+                try {
+                    long l = Long.parseLong(this.text);
+                    n = l == (int)l ? (Number)Integer.valueOf((int)l) :
+                            (Number)Long.valueOf(l);
+                } catch (NumberFormatException e) {
+                    n = new BigInteger(this.text);
+                }
+            } else {
+                n = Double.valueOf(this.text);
+            }
+            this.value = n;
+        }
+        return n;
+    }
+
+
+    /**
+     * Get the exact value of the number.
+     * @return A BigDecimal.
+     */
+    public BigDecimal bigDecimalValue() {
+        return new BigDecimal(this.text);
+    }
+
+
+    @Override
+    public double doubleValue() {
+        return value().doubleValue();
+    }
+
+
+    @Override
+    public float floatValue() {
+        return value().floatValue();
+    }
+
+
+    @Override
+    public int intValue() {
+        return value().intValue();
+    }
+
+
+    @Override
+    public long longValue() {
+        return value().longValue();
+    }
+
+
+    /**
+     * Two JSONNumbers are equal if they were written the same way.
+     */
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof JSONNumber &&
+                this.text.equals(((JSONNumber)object).text);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return this.text.hashCode();
+    }
+
+
+    /**
+     * Get the original text of the number.
+     * @return The digits as they appeared in the JSON text.
+     */
+    @Override
+    public String toString() {
+        return this.text;
+    }
+}
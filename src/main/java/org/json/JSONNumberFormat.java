@@ -0,0 +1,163 @@
+package org.json;
+
+/**
+ * JSONNumberFormat writes the digits of numbers straight into a char array,
+ * without making Strings.
+ * <p>
+ * Integers are written digit by digit. A double between 0.001 and 10^7,
+ * which is where <code>Double.toString</code> does not use an exponent, is
+ * written in the shortest decimal form that reads back as the same double,
+ * when that form has at most ten digits after the decimal point. That covers
+ * the amounts, coordinates and measurements that most documents hold. Other
+ * doubles are left to <code>Double.toString</code>.
+ */
+final class JSONNumberFormat {
+
+    /**
+     * The most chars that <code>formatLong</code> and
+     * <code>formatDouble</code> write.
+     */
+    static final int MAX_LENGTH = 24;
+
+    /**
+     * The most digits after the decimal point that are tried.
+     */
+    private static final int MAX_FRACTION = 10;
+
+    /**
+     * The powers of ten that can be held exactly in a double.
+     */
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10
+    };
+
+    private static final long[] LONG_POW10 = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+        100000000L, 1000000000L, 10000000000L
+    };
+
+    /**
+     * The largest integer below which all integers are exact doubles.
+     */
+    private static final double EXACT = 9007199254740992.0;
+
+
+    private JSONNumberFormat() {
+    }
+
+
+    /**
+     * Write the number of digits of a non-negative long, backwards from an
+     * end index.
+     * @return The index of the first digit.
+     */
+    private static int digits(long v, char[] buf, int end, int count) {
+        for (int i = 0; i < count; i += 1) {
+            end -= 1;
+            buf[end] = (char)('0' + (int)(v % 10));
+            v /= 10;
+        }
+        return end;
+    }
+
+
+    /**
+     * Write an Integer, Long, Short, Byte or Double in the form that
+     * <code>numberToString</code> gives it.
+     * @param n A finite number.
+     * @param buf The array, with at least MAX_LENGTH chars from pos.
+     * @param pos The index to start at.
+     * @return The index after the last char, or -1 if nothing was written.
+     */
+    static int format(Number n, char[] buf, int pos) {
+        if (n instanceof Integer || n instanceof Long || n instanceof Short ||
+                n instanceof Byte) {
+            return formatLong(n.longValue(), buf, pos);
+        }
+        if (n instanceof Double) {
+            return formatDouble(n.doubleValue(), buf, pos);
+        }
+        return -1;
+    }
+
+
+    /**
+     * Write a double in the form that <code>numberToString</code> gives it,
+     * if it can be done without <code>Double.toString</code>.
+     * @param d A finite double.
+     * @param buf The array, with at least MAX_LENGTH chars from pos.
+     * @param pos The index to start at.
+     * @return The index after the last char, or -1 if nothing was written.
+     */
+    static int formatDouble(double d, char[] buf, int pos) {
+        if (d == 0) {
+            if (1 / d < 0) {
+                buf[pos] = '-';
+                pos += 1;
+            }
+            buf[pos] = '0';
+            return pos + 1;
+        }
+        double a = Math.abs(d);
+        if (a < 1e-3 || a >= 1e7) {
+            return -1;
+        }
+
+// Find the fewest digits after the decimal point that read back as the same
+// double. Both the scaled value and the power of ten are exact doubles, so
+// the division is rounded once, just as the parser rounds the text.
+
+        for (int k = 0; k <= MAX_FRACTION; k += 1) {
+            double scaled = a * POW10[k];
+            if (scaled >= EXACT) {
+                return -1;
+            }
+            long m = Math.round(scaled);
+            if (m / POW10[k] == a) {
+                if (d < 0) {
+                    buf[pos] = '-';
+                    pos += 1;
+                }
+                long whole = m / LONG_POW10[k];
+                pos = formatLong(whole, buf, pos);
+                if (k > 0) {
+                    buf[pos] = '.';
+                    pos += 1;
+                    pos += k;
+                    digits(m - whole * LONG_POW10[k], buf, pos, k);
+                }
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Write a long.
+     * @param v A long.
+     * @param buf The array, with at least MAX_LENGTH chars from pos.
+     * @param pos The index to start at.
+     * @return The index after the last char.
+     */
+    static int formatLong(long v, char[] buf, int pos) {
+        if (v < 0) {
+            if (v == Long.MIN_VALUE) {
+                String s = Long.toString(v);
+                s.getChars(0, s.length(), buf, pos);
+                return pos + s.length();
+            }
+            buf[pos] = '-';
+            pos += 1;
+            v = -v;
+        }
+        int count = 1;
+        long t = v;
+        while (t >= 10) {
+            t /= 10;
+            count += 1;
+        }
+        digits(v, buf, pos + count, count);
+        return pos + count;
+    }
+}
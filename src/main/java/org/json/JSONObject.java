@@ -25,17 +25,23 @@ SOFTWARE.
 */
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
 /**
  * A JSONObject is an unordered collection of name/value pairs. Its
@@ -139,7 +145,14 @@ public class JSONObject {
     /**
      * The map where the JSONObject's properties are kept.
      */
-    private Map<String, Object> map;
+    Map<String, Object> map;
+
+
+    /**
+     * The kept text of this JSONObject, if <code>cacheText</code> has been
+     * called on it or on a node that holds it.
+     */
+    JSONTextCache cache;
 
 
     /**
@@ -159,6 +172,15 @@ public class JSONObject {
     }
 
 
+    /**
+     * Construct a JSONObject without a map, for a subclass that keeps its
+     * members elsewhere and overrides every method that uses the map.
+     * @param none Ignored.
+     */
+    JSONObject(Void none) {
+    }
+
+
     /**
      * Construct a JSONObject from a subset of another JSONObject.
      * An array of strings is used to identify the keys that should be copied.
@@ -184,6 +206,28 @@ public class JSONObject {
      */
     public JSONObject(JSONTokener x) throws JSONException {
         this();
+        parse(x);
+    }
+
+
+    /**
+     * Construct an empty JSONObject with room for a number of members.
+     * @param capacity The expected number of members.
+     */
+    public JSONObject(int capacity) {
+        this.map = new LinkedHashMap<String, Object>(
+                Math.max(capacity * 4 / 3 + 1, 16));
+    }
+
+
+    /**
+     * Parse the members of a JSONObject text from a JSONTokener and put them
+     * in this JSONObject.
+     * @param x A JSONTokener object containing the source string.
+     * @throws JSONException If there is a syntax error in the source string
+     *  or a duplicated key.
+     */
+    void parse(JSONTokener x) throws JSONException {
         char c;
         String key;
 
@@ -200,6 +244,9 @@ public class JSONObject {
             default:
                 x.back();
                 key = x.nextValue().toString();
+                if (x.isInternKeys()) {
+                    key = JSONKey.intern(key);
+                }
             }
 
             /*
@@ -214,7 +261,8 @@ public class JSONObject {
             } else if (c != ':') {
                 throw x.syntaxError("Expected a ':' after a key");
             }
-            putOnce(key, x.nextValue());
+            putOnce(key, x.isFragmentKey(key) ?
+                    x.nextFragment() : x.nextValue());
 
             /*
              * Pairs are separated by ','. We will also tolerate ';'.
@@ -473,6 +521,91 @@ public class JSONObject {
     }
 
 
+    /**
+     * Keep the compact JSON text of this JSONObject and of the JSONObjects
+     * and JSONArrays within it once it has been written, so that writing
+     * it again copies the text of the parts that have not changed. Each
+     * <code>put</code> or <code>remove</code> drops the kept text of the
+     * changed node and of the nodes that hold it. Caching stays on for
+     * the values that are put later.
+     * <p>
+     * The text is kept at every level, so a tree uses about as many chars
+     * of cache per level of nesting as its text is long. Only plain
+     * JSONObjects and JSONArrays keep their text. A node that holds other
+     * mutable values, such as beans, Maps or JSONString objects, is written
+     * each time. Changes made to a node other than through its methods,
+     * such as through the iterator of <code>keys</code>, are not noticed.
+     * @return this.
+     */
+    public JSONObject cacheText() {
+        JSONTextCache.enable(this);
+        return this;
+    }
+
+
+    /**
+     * Get the hash code of an immutable JSONObject if it is already known.
+     * @return The hash code, or 0 if it is not known.
+     */
+    int cachedHashCode() {
+        return 0;
+    }
+
+
+    /**
+     * Remove all of the members from this JSONObject. The storage is kept,
+     * so the JSONObject can be refilled without growing again.
+     */
+    public void clear() {
+        if (this.cache != null) {
+            this.cache.cleared(this);
+        }
+        this.map.clear();
+    }
+
+
+    /**
+     * Make a deep copy of this JSONObject. Nested JSONObjects and JSONArrays
+     * are copied, and the copies are made with room for their members.
+     * Strings, numbers, booleans and <code>NULL</code> are immutable, so
+     * they are shared with the copy. The copy is always a plain JSONObject,
+     * also when this is a subclass or a view.
+     * @return A new JSONObject.
+     */
+    public JSONObject deepCopy() {
+        JSONObject jo = new JSONObject(length());
+        Iterator<String> keys = keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            jo.map.put(key, copyValue(opt(key)));
+        }
+        return jo;
+    }
+
+
+    /**
+     * Replace the JSONStringView values of this JSONObject and of the
+     * JSONObjects and JSONArrays within it by Strings, so that they no longer
+     * refer to the text they were parsed from.
+     * @return this.
+     */
+    public JSONObject detach() {
+        Iterator<Map.Entry<String, Object>> i = this.map.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<String, Object> e = i.next();
+            Object v = e.getValue();
+            if (v instanceof JSONStringView) {
+                e.setValue(v.toString());
+            } else if (v instanceof JSONObject) {
+                ((JSONObject)v).detach();
+            } else if (v instanceof JSONArray) {
+                ((JSONArray)v).detach();
+            }
+        }
+        return this;
+    }
+
+
     /**
      * Produce a string from a double. The string "null" will be returned if
      * the number is not finite.
@@ -483,19 +616,45 @@ public class JSONObject {
         if (Double.isInfinite(d) || Double.isNaN(d)) {
             return "null";
         }
+        char[] buf = new char[JSONNumberFormat.MAX_LENGTH];
+        int end = JSONNumberFormat.formatDouble(d, buf, 0);
+        if (end >= 0) {
+            return new String(buf, 0, end);
+        }
+        return trimZeros(Double.toString(d));
+    }
 
-// Shave off trailing zeros and decimal point, if possible.
 
-        String s = Double.toString(d);
-        if (s.indexOf('.') > 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
-            while (s.endsWith("0")) {
-                s = s.substring(0, s.length() - 1);
-            }
-            if (s.endsWith(".")) {
-                s = s.substring(0, s.length() - 1);
+    /**
+     * Determine if this JSONObject has the same members as another. The
+     * order of the members does not matter. Numbers are equal if they have
+     * the same numeric value, whatever their class, and strings are equal
+     * to JSONStringViews with the same characters.
+     * @param object The object to compare with.
+     * @return true if the object is a JSONObject with equal members.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (!(object instanceof JSONObject)) {
+            return false;
+        }
+        JSONObject that = (JSONObject)object;
+        int h = cachedHashCode();
+        int k = that.cachedHashCode();
+        if ((h != 0 && k != 0 && h != k) || length() != that.length()) {
+            return false;
+        }
+        Iterator<String> keys = keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!valueEquals(opt(key), that.opt(key))) {
+                return false;
             }
         }
-        return s;
+        return true;
     }
 
 
@@ -516,6 +675,27 @@ public class JSONObject {
     }
 
 
+    /**
+     * Get the exact decimal value associated with a key. Doubles are
+     * converted from their shortest decimal form.
+     *
+     * @param key   A key string.
+     * @return      The BigDecimal value.
+     * @throws   JSONException if the key is not found or if the value is not
+     *  a Number object and cannot be converted to a number.
+     */
+    public BigDecimal getBigDecimal(String key) throws JSONException {
+        Object o = get(key);
+        try {
+            return o instanceof Number ? toBigDecimal((Number)o) :
+                new BigDecimal(((CharSequence)o).toString());
+        } catch (Exception e) {
+            throw new JSONException("JSONObject[" + quote(key) +
+                "] is not a number.");
+        }
+    }
+
+
     /**
      * Get the boolean value associated with a key.
      *
@@ -527,12 +707,12 @@ public class JSONObject {
     public boolean getBoolean(String key) throws JSONException {
         Object o = get(key);
         if (o.equals(Boolean.FALSE) ||
-                (o instanceof String &&
-                ((String)o).equalsIgnoreCase("false"))) {
+                (o instanceof CharSequence &&
+                o.toString().equalsIgnoreCase("false"))) {
             return false;
         } else if (o.equals(Boolean.TRUE) ||
-                (o instanceof String &&
-                ((String)o).equalsIgnoreCase("true"))) {
+                (o instanceof CharSequence &&
+                o.toString().equalsIgnoreCase("true"))) {
             return true;
         }
         throw new JSONException("JSONObject[" + quote(key) +
@@ -552,7 +732,7 @@ public class JSONObject {
         try {
             return o instanceof Number ?
                 ((Number)o).doubleValue() :
-                Double.valueOf((String)o).doubleValue();
+                Double.valueOf(((CharSequence)o).toString()).doubleValue();
         } catch (Exception e) {
             throw new JSONException("JSONObject[" + quote(key) +
                 "] is not a number.");
@@ -573,7 +753,7 @@ public class JSONObject {
         try {
             return o instanceof Number ?
                 ((Number)o).intValue() :
-                Integer.parseInt((String)o);
+                Integer.parseInt(((CharSequence)o).toString());
         } catch (Exception e) {
             throw new JSONException("JSONObject[" + quote(key) +
                 "] is not an int.");
@@ -630,7 +810,7 @@ public class JSONObject {
         try {
             return o instanceof Number ?
                 ((Number)o).longValue() :
-                Long.parseLong((String)o);
+                Long.parseLong(((CharSequence)o).toString());
         } catch (Exception e) {
             throw new JSONException("JSONObject[" + quote(key) +
                 "] is not a long.");
@@ -702,6 +882,24 @@ public class JSONObject {
     }
 
 
+    /**
+     * Get a hash code consistent with <code>equals</code>. It is computed
+     * from the members each time, except for immutable JSONObjects, which
+     * keep it.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        Iterator<String> keys = keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            h += key.hashCode() ^ valueHashCode(opt(key));
+        }
+        return h;
+    }
+
+
     /**
      * Increment a property of a JSONObject. If there is no such property,
      * create one with a value of 1. If there is such a property, and if
@@ -791,19 +989,22 @@ public class JSONObject {
             throw new JSONException("Null pointer");
         }
         testValidity(n);
+        if (n instanceof JSONNumber) {
+            return n.toString();
+        }
 
-// Shave off trailing zeros and decimal point, if possible.
+// BigDecimals keep their scale, so that amounts such as 2.50 are written as
+// they were read.
 
-        String s = n.toString();
-        if (s.indexOf('.') > 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
-            while (s.endsWith("0")) {
-                s = s.substring(0, s.length() - 1);
-            }
-            if (s.endsWith(".")) {
-                s = s.substring(0, s.length() - 1);
-            }
+        if (n instanceof BigDecimal || n instanceof BigInteger) {
+            return n.toString();
         }
-        return s;
+        char[] buf = new char[JSONNumberFormat.MAX_LENGTH];
+        int end = JSONNumberFormat.format(n, buf, 0);
+        if (end >= 0) {
+            return new String(buf, 0, end);
+        }
+        return trimZeros(n.toString());
     }
 
 
@@ -875,7 +1076,7 @@ public class JSONObject {
     public double optDouble(String key, double defaultValue) {
             Object o = opt(key);
             return o instanceof Number ? ((Number)o).doubleValue() :
-                new Double((String)o).doubleValue();
+                new Double(((CharSequence)o).toString()).doubleValue();
     }
 
 
@@ -1002,6 +1203,27 @@ public class JSONObject {
 
 
 
+    /**
+     * Parse a JSONObject text into an existing JSONObject, replacing its
+     * members. The nested JSONObjects and JSONArrays held by the JSONObject
+     * are reused for the nested containers of the text, so a stream of texts
+     * of the same shape can be parsed with few new allocations. References
+     * to the old nested containers must not be kept, because their contents
+     * are overwritten.
+     * @param x A JSONTokener object containing the source string.
+     * @param jo The JSONObject to fill.
+     * @return jo.
+     * @throws JSONException If there is a syntax error in the source string
+     *  or a duplicated key.
+     */
+    public static JSONObject parseInto(JSONTokener x, JSONObject jo)
+            throws JSONException {
+        x.recycle(jo);
+        jo.parse(x);
+        return jo;
+    }
+
+
     /**
      * Put a key/boolean pair in the JSONObject.
      *
@@ -1103,7 +1325,10 @@ public class JSONObject {
         }
         if (value != null) {
             testValidity(value);
-            this.map.put(key, value);
+            Object old = this.map.put(key, value);
+            if (this.cache != null) {
+                this.cache.changed(this, old, value);
+            }
         } else {
             remove(key);
         }
@@ -1162,54 +1387,36 @@ public class JSONObject {
             return "\"\"";
         }
 
-        char         b;
-        char         c = 0;
-        int          i;
-        int          len = string.length();
-        StringBuilder sb = new StringBuilder(len + 4);
-        String       t;
+        int len = string.length();
+        int i = JSONSerializer.escapeIndex(string, 0);
+        if (i == len) {
+            return new StringBuilder(len + 2).append('"').append(string)
+                    .append('"').toString();
+        }
+
+// Copy the runs of characters that need no escape in bulk, and write each
+// escape from the tables.
 
+        StringBuilder sb = new StringBuilder(len + 16);
+        int start = 0;
         sb.append('"');
-        for (i = 0; i < len; i += 1) {
-            b = c;
-            c = string.charAt(i);
-            switch (c) {
-            case '\\':
-            case '"':
-                sb.append('\\');
-                sb.append(c);
-                break;
-            case '/':
-                if (b == '<') {
-                    sb.append('\\');
-                }
-                sb.append(c);
-                break;
-            case '\b':
-                sb.append("\\b");
-                break;
-            case '\t':
-                sb.append("\\t");
-                break;
-            case '\n':
-                sb.append("\\n");
-                break;
-            case '\f':
-                sb.append("\\f");
-                break;
-            case '\r':
-                sb.append("\\r");
-                break;
-            default:
-                if (c < ' ' || (c >= '\u0080' && c < '\u00a0') ||
-                               (c >= '\u2000' && c < '\u2100')) {
-                    t = "000" + Integer.toHexString(c);
-                    sb.append("\\u" + t.substring(t.length() - 4));
-                } else {
-                    sb.append(c);
-                }
+        while (i < len) {
+            sb.append(string, start, i);
+            char c = string.charAt(i);
+            char e = JSONSerializer.escape(c);
+            sb.append('\\');
+            if (e == 'u') {
+                char[] hex = JSONSerializer.HEX;
+                sb.append('u').append(hex[(c >> 12) & 0xF])
+                        .append(hex[(c >> 8) & 0xF])
+                        .append(hex[(c >> 4) & 0xF]).append(hex[c & 0xF]);
+            } else {
+                sb.append(e);
             }
+            start = i + 1;
+            i = JSONSerializer.escapeIndex(string, start);
         }
+        sb.append(string, start, len);
         sb.append('"');
         return sb.toString();
     }
@@ -1221,9 +1428,56 @@ public class JSONObject {
      * or null if there was no value.
      */
     public Object remove(String key) {
-        return this.map.remove(key);
+        Object old = this.map.remove(key);
+        if (this.cache != null && old != null) {
+            this.cache.changed(this, old, null);
+        }
+        return old;
+    }
+
+    /**
+     * Write the JSON text of this JSONObject to a JSONSerializer. A plain
+     * JSONObject walks its map directly; subclasses are walked through
+     * <code>keys</code> and <code>opt</code>.
+     * @param s The JSONSerializer.
+     */
+    void serialize(JSONSerializer s) throws IOException {
+        if (this.cache != null && !s.isPretty()) {
+            s.write(this.cache.get(this));
+        } else if (getClass() == JSONObject.class) {
+            if (s.isParallel(this.map.size())) {
+                new JSONParallelWriter(s.getExecutor(), this).write(s);
+            } else {
+                s.members(this.map);
+            }
+        } else {
+            s.members(this);
+        }
+    }
+
+
+    /**
+     * Make a shallow copy of this JSONObject. The copy has its own members,
+     * but their values are shared: a nested JSONObject or JSONArray is the
+     * same instance in both. The copy is always a plain JSONObject.
+     * @return A new JSONObject.
+     */
+    public JSONObject shallowCopy() {
+        if (getClass() == JSONObject.class) {
+            JSONObject jo = new JSONObject();
+            jo.map = new LinkedHashMap<String, Object>(this.map);
+            return jo;
+        }
+        JSONObject jo = new JSONObject(length());
+        Iterator<String> keys = keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            jo.map.put(key, opt(key));
+        }
+        return jo;
     }
 
+
     /**
      * Get an enumeration of the keys of the JSONObject.
      * The keys will be sorted alphabetically.
@@ -1231,9 +1485,36 @@ public class JSONObject {
      * @return An iterator of the keys.
      */
     public Iterator<String> sortedKeys() {
-      return new TreeSet<String>(this.map.keySet()).iterator();
+      TreeSet<String> sorted = new TreeSet<String>();
+      Iterator<String> keys = keys();
+      while (keys.hasNext()) {
+          sorted.add(keys.next());
+      }
+      return sorted.iterator();
+    }
+
+    /**
+     * Shave off trailing zeros and decimal point, if possible.
+     * @param s The text of a number.
+     * @return The text without the zeros.
+     */
+    static String trimZeros(String s) {
+        if (s.indexOf('.') > 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+            int end = s.length();
+            while (s.charAt(end - 1) == '0') {
+                end -= 1;
+            }
+            if (s.charAt(end - 1) == '.') {
+                end -= 1;
+            }
+            if (end < s.length()) {
+                s = s.substring(0, end);
+            }
+        }
+        return s;
     }
 
+
     /**
      * Try to convert a string into a number, boolean, or null. If the string
      * can't be converted, return the string.
@@ -1292,6 +1573,30 @@ public class JSONObject {
     }
 
 
+    /**
+     * Convert a JSON number without losing precision. Integers that fit in
+     * a long become an Integer or a Long, larger ones a BigInteger. Numbers
+     * with a fraction or an exponent become a BigDecimal that keeps the
+     * digits and scale as written.
+     * @param s A string that follows the strict JSON number syntax.
+     * @return A Number.
+     */
+    static Number stringToExactNumber(String s) {
+        if (s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+            int digits = s.charAt(0) == '-' ? s.length() - 1 : s.length();
+            if (digits <= 18) {
+                long l = Long.parseLong(s);
+                return l == (int)l ? (Number)Integer.valueOf((int)l) :
+                        (Number)Long.valueOf(l);
+            }
+            BigInteger bi = new BigInteger(s);
+            return bi.bitLength() < 64 ? (Number)Long.valueOf(bi.longValue()) :
+                    (Number)bi;
+        }
+        return new BigDecimal(s);
+    }
+
+
     /**
      * Throw an exception if the object is an NaN or infinite number.
      * @param o The object to test.
@@ -1314,6 +1619,126 @@ public class JSONObject {
     }
 
 
+    /**
+     * Copy a value for <code>deepCopy</code>. Containers are copied, all
+     * other values are immutable and returned as they are.
+     */
+    static Object copyValue(Object value) {
+        if (value instanceof JSONObject) {
+            return ((JSONObject)value).deepCopy();
+        }
+        if (value instanceof JSONArray) {
+            return ((JSONArray)value).deepCopy();
+        }
+        return value;
+    }
+
+
+    /**
+     * Compare two member values the way <code>equals</code> does.
+     */
+    static boolean valueEquals(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return numberEquals((Number)a, (Number)b);
+        }
+        if (a instanceof CharSequence && b instanceof CharSequence) {
+            CharSequence x = (CharSequence)a;
+            CharSequence y = (CharSequence)b;
+            int len = x.length();
+            if (len != y.length()) {
+                return false;
+            }
+            for (int i = 0; i < len; i += 1) {
+                if (x.charAt(i) != y.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a.equals(b);
+    }
+
+
+    /**
+     * Get the hash code of a member value, consistent with
+     * <code>valueEquals</code>. Numbers hash by their double value, which is
+     * the same for all numbers with the same numeric value.
+     */
+    static int valueHashCode(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            double d = ((Number)value).doubleValue();
+            long bits = d == 0 ? 0 : Double.doubleToLongBits(d);
+            return (int)(bits ^ (bits >>> 32));
+        }
+        if (value instanceof CharSequence && !(value instanceof String) &&
+                !(value instanceof JSONStringView)) {
+            return value.toString().hashCode();
+        }
+        return value.hashCode();
+    }
+
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long ||
+                n instanceof Short || n instanceof Byte;
+    }
+
+
+    private static boolean isFinite(double d) {
+        return !Double.isInfinite(d) && !Double.isNaN(d);
+    }
+
+
+    private static boolean isFloating(Number n) {
+        return n instanceof Double || n instanceof Float;
+    }
+
+
+    /**
+     * Compare two numbers by value. Mixed kinds are compared exactly as
+     * BigDecimals, with doubles taken at their shortest decimal form.
+     */
+    private static boolean numberEquals(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return a.longValue() == b.longValue();
+        }
+        if (isFloating(a) && isFloating(b)) {
+            return a.doubleValue() == b.doubleValue();
+        }
+        if ((isFloating(a) && !isFinite(a.doubleValue())) ||
+                (isFloating(b) && !isFinite(b.doubleValue()))) {
+            return false;
+        }
+        return toBigDecimal(a).compareTo(toBigDecimal(b)) == 0;
+    }
+
+
+    static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof BigDecimal) {
+            return (BigDecimal)n;
+        }
+        if (n instanceof BigInteger) {
+            return new BigDecimal((BigInteger)n);
+        }
+        if (n instanceof JSONNumber) {
+            return ((JSONNumber)n).bigDecimalValue();
+        }
+        if (isIntegral(n)) {
+            return BigDecimal.valueOf(n.longValue());
+        }
+        return BigDecimal.valueOf(n.doubleValue());
+    }
+
+
     /**
      * Produce a JSONArray containing the values of the members of this
      * JSONObject.
@@ -1347,20 +1772,14 @@ public class JSONObject {
      */
     @Override
     public String toString() {
-            Iterator<String>     keys = keys();
-            StringBuilder sb = new StringBuilder("{");
-
-            while (keys.hasNext()) {
-                if (sb.length() > 1) {
-                    sb.append(',');
-                }
-                Object o = keys.next();
-                sb.append(quote(o.toString()));
-                sb.append(':');
-                sb.append(valueToString(this.map.get(o)));
+        if (this.cache != null) {
+            try {
+                return this.cache.get(this);
+            } catch (IOException e) {
+                throw new JSONException(e);
             }
-            sb.append('}');
-            return sb.toString();
+        }
+        return JSONSerializer.toString(this);
     }
 
 
@@ -1395,46 +1814,7 @@ public class JSONObject {
      * @throws JSONException If the object contains an invalid number.
      */
     String toString(int indentFactor, int indent) throws JSONException {
-        int j;
-        int n = length();
-        if (n == 0) {
-            return "{}";
-        }
-        Iterator<String>     keys = sortedKeys();
-        StringBuilder sb = new StringBuilder("{");
-        int          newindent = indent + indentFactor;
-        Object       o;
-        if (n == 1) {
-            o = keys.next();
-            sb.append(quote(o.toString()));
-            sb.append(": ");
-            sb.append(valueToString(this.map.get(o), indentFactor,
-                    indent));
-        } else {
-            while (keys.hasNext()) {
-                o = keys.next();
-                if (sb.length() > 1) {
-                    sb.append(",\n");
-                } else {
-                    sb.append('\n');
-                }
-                for (j = 0; j < newindent; j += 1) {
-                    sb.append(' ');
-                }
-                sb.append(quote(o.toString()));
-                sb.append(": ");
-                sb.append(valueToString(this.map.get(o), indentFactor,
-                        newindent));
-            }
-            if (sb.length() > 1) {
-                sb.append('\n');
-                for (j = 0; j < indent; j += 1) {
-                    sb.append(' ');
-                }
-            }
-        }
-        sb.append('}');
-        return sb.toString();
+        return JSONSerializer.toString(this, indentFactor, indent);
     }
 
 
@@ -1463,30 +1843,13 @@ public class JSONObject {
         if (value == null || value.equals(NULL)) {
             return "null";
         }
-        if (value instanceof JSONString) {
-            try {
-                return ((JSONString)value).toJSONString();
-            } catch (Exception e) {
-                throw new JSONException("Bad value from toJSONString: ", e);
-            }
-        }
         if (value instanceof Number) {
             return numberToString((Number) value);
         }
-        if (value instanceof Boolean || value instanceof JSONObject ||
-                value instanceof JSONArray) {
+        if (value instanceof Boolean) {
             return value.toString();
         }
-        if (value instanceof Map) {
-            return new JSONObject((Map<?, ?>)value).toString();
-        }
-        if (value instanceof Collection) {
-            return new JSONArray((Collection<?>)value).toString();
-        }
-        if (value.getClass().isArray()) {
-            return new JSONArray(value).toString();
-        }
-        return quote(value.toString());
+        return JSONSerializer.toString(value);
     }
 
 
@@ -1506,38 +1869,7 @@ public class JSONObject {
      */
      static String valueToString(Object value, int indentFactor, int indent)
             throws JSONException {
-        if (value == null || value.equals(NULL)) {
-            return "null";
-        }
-        if (value instanceof JSONString) {
-            try {
-                return ((JSONString)value).toJSONString();
-            } catch (Exception e) {
-                throw new JSONException("Bad value from toJSONString: ", e);
-            }
-        }
-        if (value instanceof Number) {
-            return numberToString((Number) value);
-        }
-        if (value instanceof Boolean) {
-            return value.toString();
-        }
-        if (value instanceof JSONObject) {
-            return ((JSONObject)value).toString(indentFactor, indent);
-        }
-        if (value instanceof JSONArray) {
-            return ((JSONArray)value).toString(indentFactor, indent);
-        }
-        if (value instanceof Map) {
-            return new JSONObject((Map<?,?>)value).toString(indentFactor, indent);
-        }
-        if (value instanceof Collection) {
-            return new JSONArray((Collection<?>)value).toString(indentFactor, indent);
-        }
-        if (value.getClass().isArray()) {
-            return new JSONArray(value).toString(indentFactor, indent);
-        }
-        return quote(value.toString());
+        return JSONSerializer.toString(value, indentFactor, indent);
     }
 
 
@@ -1562,7 +1894,8 @@ public class JSONObject {
                      object instanceof Short  || object instanceof Integer   ||
                      object instanceof Long   || object instanceof Boolean   ||
                      object instanceof Float  || object instanceof Double    ||
-                     object instanceof String || NULL.equals(object)) {
+                     object instanceof String || object instanceof JSONNumber ||
+                     object instanceof JSONStringView || NULL.equals(object)) {
                  return object;
              }
 
@@ -1597,31 +1930,155 @@ public class JSONObject {
       */
      public Writer write(Writer writer) throws JSONException {
         try {
-            boolean  b = false;
-            Iterator<String> keys = keys();
-            writer.write('{');
-
-            while (keys.hasNext()) {
-                if (b) {
-                    writer.write(',');
-                }
-                Object k = keys.next();
-                writer.write(quote(k.toString()));
-                writer.write(':');
-                Object v = this.map.get(k);
-                if (v instanceof JSONObject) {
-                    ((JSONObject)v).write(writer);
-                } else if (v instanceof JSONArray) {
-                    ((JSONArray)v).write(writer);
-                } else {
-                    writer.write(valueToString(v));
-                }
-                b = true;
-            }
-            writer.write('}');
+            JSONSerializer s = new JSONSerializer(writer);
+            serialize(s);
+            s.flush();
             return writer;
         } catch (IOException exception) {
             throw new JSONException(exception);
         }
      }
+
+
+    /**
+     * Write the contents of the JSONObject as pretty printed JSON text to a
+     * writer. The text is indented as it is written, so no strings are made
+     * for the nested values.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param writer The writer.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation.
+     * @param sortKeys true to write the keys in sorted order, as
+     *  <code>toString(int)</code> does, or false to keep their order.
+     * @return The writer.
+     * @throws JSONException If the object contains an invalid number.
+     */
+    public Writer write(Writer writer, int indentFactor, boolean sortKeys)
+            throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(writer);
+            s.setIndent(indentFactor, 0, sortKeys);
+            serialize(s);
+            s.flush();
+            return writer;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Write the contents of the JSONObject as JSON text to a ByteBuffer,
+     * encoded as UTF-8. The text starts at the position of the buffer, and
+     * the position is left after it.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param buffer The ByteBuffer.
+     * @return The ByteBuffer.
+     * @throws JSONException If there is not enough room left in the buffer.
+     *  Part of the text may have been written.
+     */
+    public ByteBuffer write(ByteBuffer buffer) throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(buffer);
+            serialize(s);
+            s.flush();
+            return buffer;
+        } catch (BufferOverflowException e) {
+            throw new JSONException("Not enough room in the buffer.");
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Write the contents of the JSONObject as JSON text to an OutputStream,
+     * encoded as UTF-8. The text is encoded block by block, so no String or
+     * byte array of the whole text is made. The stream is not flushed.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param out The OutputStream.
+     * @return The OutputStream.
+     * @throws JSONException If the stream cannot be written.
+     */
+    public OutputStream write(OutputStream out) throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(out);
+            serialize(s);
+            s.flush();
+            return out;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Write the contents of the JSONObject as JSON text to an OutputStream,
+     * encoded as UTF-8, using the threads of an ExecutorService. The
+     * elements or members of each large array or object, at the top or
+     * nested, are split into chunks that are written into separate buffers
+     * at the same time, and the buffers are written to the stream in order,
+     * so the text is the same as that of <code>write(OutputStream)</code>.
+     * The JSONObject must not be changed until this method returns. Small
+     * arrays and objects, subclasses and values with <code>cacheText</code>
+     * are written by the calling thread.
+     * <p>
+     * The calling thread waits for the chunks. Do not call this method from
+     * a task of the same executor when it has a bounded number of threads:
+     * if all of them are waiting, no thread is left to write the chunks,
+     * and the write deadlocks.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param out The OutputStream.
+     * @param executor The ExecutorService that runs the chunks, or null to
+     *  write by the calling thread.
+     * @return The OutputStream.
+     * @throws JSONException If the stream cannot be written.
+     */
+    public OutputStream write(OutputStream out, ExecutorService executor)
+            throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(out);
+            s.setExecutor(executor);
+            serialize(s);
+            s.flush();
+            return out;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Write the contents of the JSONObject as JSON text to a writer, using the
+     * threads of an ExecutorService, as <code>write(OutputStream,
+     * ExecutorService)</code> does.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param writer The writer.
+     * @param executor The ExecutorService that runs the chunks, or null to
+     *  write by the calling thread.
+     * @return The writer.
+     * @throws JSONException If the writer cannot be written.
+     */
+    public Writer write(Writer writer, ExecutorService executor)
+            throws JSONException {
+        try {
+            JSONSerializer s = new JSONSerializer(writer);
+            s.setExecutor(executor);
+            serialize(s);
+            s.flush();
+            return writer;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
 }
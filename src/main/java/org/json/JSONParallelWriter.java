@@ -0,0 +1,183 @@
+package org.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A JSONParallelWriter writes the compact JSON text of a large JSONArray or
+ * JSONObject using the threads of an ExecutorService. The elements or
+ * members are split into chunks, each chunk is written into its own buffer
+ * by a task, and the buffers are copied to the serializer in order, so the
+ * text is the same as that of <code>write</code>. Only a few chunks more
+ * than there are processors are in progress at a time, which bounds the
+ * memory taken by the buffers.
+ * <p>
+ * A JSONSerializer that has an executor hands each large plain JSONArray
+ * or JSONObject that it reaches to a JSONParallelWriter, so a large array
+ * nested in a small object is split too. The chunks are written by
+ * serializers without an executor, so the tasks never wait for other
+ * tasks. The calling thread does wait for them, so it must not be a thread
+ * of the same executor when that executor has a bounded number of threads:
+ * if all of them wait for chunks, no thread is left to write the chunks.
+ * <p>
+ * The values are only read, so the JSONArray or JSONObject must not be
+ * changed while it is being written.
+ */
+final class JSONParallelWriter {
+
+    /**
+     * The number of elements or members in a chunk. Smaller arrays and
+     * objects are written by the calling thread.
+     */
+    static final int CHUNK = 1024;
+
+    private final ExecutorService executor;
+
+    /**
+     * The keys of the members, or null for the elements of a JSONArray.
+     */
+    private final String[] keys;
+
+    /**
+     * The elements, or the values of the members.
+     */
+    private final Object[] values;
+
+
+    /**
+     * Construct a JSONParallelWriter for the elements of a JSONArray.
+     */
+    JSONParallelWriter(ExecutorService executor, JSONArray ja) {
+        this.executor = executor;
+        this.keys = null;
+        this.values = new Object[ja.length()];
+        for (int i = 0; i < this.values.length; i += 1) {
+            this.values[i] = ja.opt(i);
+        }
+    }
+
+
+    /**
+     * Construct a JSONParallelWriter for the members of a JSONObject.
+     */
+    JSONParallelWriter(ExecutorService executor, JSONObject jo) {
+        this.executor = executor;
+        int len = jo.map.size();
+        this.keys = new String[len];
+        this.values = new Object[len];
+        Iterator<Map.Entry<String, Object>> i = jo.map.entrySet().iterator();
+        for (int j = 0; j < len; j += 1) {
+            Map.Entry<String, Object> e = i.next();
+            this.keys[j] = e.getKey();
+            this.values[j] = e.getValue();
+        }
+    }
+
+
+    /**
+     * Write a chunk into a serializer.
+     */
+    private void chunk(JSONSerializer s, int from, int to) throws IOException {
+        for (int i = from; i < to; i += 1) {
+            if (i > from) {
+                s.write(',');
+            }
+            if (this.keys != null) {
+                s.quote(this.keys[i]);
+                s.write(':');
+            }
+            s.value(this.values[i]);
+        }
+        s.flush();
+    }
+
+
+    /**
+     * Wait for the text of a chunk.
+     */
+    private static Object get(Future<Object> future) throws JSONException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSONException(e);
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException)t;
+            }
+            if (t instanceof Error) {
+                throw (Error)t;
+            }
+            throw new JSONException(t);
+        }
+    }
+
+
+    /**
+     * Make the task that writes a chunk.
+     * @param utf8 true to encode the chunk as UTF-8 bytes, false to keep it
+     *  as a String.
+     */
+    private Callable<Object> task(final int from, final int to,
+            final boolean utf8) {
+        return new Callable<Object>() {
+            public Object call() throws IOException {
+                if (utf8) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    chunk(new JSONSerializer(out), from, to);
+                    return out.toByteArray();
+                }
+                StringBuilder sb = new StringBuilder();
+                chunk(new JSONSerializer(sb), from, to);
+                return sb.toString();
+            }
+        };
+    }
+
+
+    /**
+     * Write the text to a serializer. The chunks are made as UTF-8 bytes
+     * when the serializer writes bytes, and as Strings otherwise.
+     */
+    void write(JSONSerializer s) throws IOException {
+        int len = this.values.length;
+        int chunks = (len + CHUNK - 1) / CHUNK;
+        int window = 2 * Runtime.getRuntime().availableProcessors() + 1;
+        boolean utf8 = s.isUTF8();
+        LinkedList<Future<Object>> pending = new LinkedList<Future<Object>>();
+        int next = 0;
+        try {
+            s.write(this.keys != null ? '{' : '[');
+            for (int c = 0; c < chunks; c += 1) {
+                while (next < chunks && next - c < window) {
+                    pending.add(this.executor.submit(task(next * CHUNK,
+                            Math.min(len, (next + 1) * CHUNK), utf8)));
+                    next += 1;
+                }
+                Object text = get(pending.removeFirst());
+                if (c > 0) {
+                    s.write(',');
+                }
+                if (utf8) {
+                    byte[] b = (byte[])text;
+                    s.writeUTF8(b, 0, b.length);
+                } else {
+                    s.write((String)text);
+                }
+            }
+            s.write(this.keys != null ? '}' : ']');
+        } finally {
+            while (!pending.isEmpty()) {
+                pending.removeFirst().cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,940 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A JSONSerializer writes JSON text for values into a Writer, a
+ * StringBuilder, an OutputStream or a ByteBuffer. Strings are escaped
+ * straight into an internal buffer of characters, which is handed to the
+ * target in large blocks, so no intermediate String is made for keys,
+ * strings or nested containers. For an OutputStream or a ByteBuffer, each
+ * block is encoded as UTF-8 into a byte buffer that is reused for the whole
+ * text.
+ * <p>
+ * After <code>setIndent</code>, the text is pretty printed in the same
+ * layout as <code>JSONObject.toString(int)</code>, with the keys of objects
+ * either sorted or in their own order.
+ * <p>
+ * The output is the same as that of the <code>valueToString</code> and
+ * <code>quote</code> methods of JSONObject. Call <code>flush</code> when
+ * done to hand the rest of the buffer to the target.
+ */
+final class JSONSerializer {
+
+    /**
+     * The buffer size when writing to a Writer.
+     */
+    private static final int WRITER_BUFFER = 4096;
+
+    /**
+     * The buffer size when writing to a StringBuilder.
+     */
+    private static final int BUILDER_BUFFER = 256;
+
+    /**
+     * How each character below 0xA0 is written in a string: 0 as it is,
+     * 'u' as a \\u escape, and otherwise as a backslash followed by the
+     * given character. '/' is only escaped when it follows '<'.
+     */
+    private static final char[] ESCAPES = new char[0xA0];
+
+    static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static {
+        for (int c = 0; c < ' '; c += 1) {
+            ESCAPES[c] = 'u';
+        }
+        for (int c = 0x80; c < 0xA0; c += 1) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['/'] = '/';
+    }
+
+    private final char[] buffer;
+
+    private int pos;
+
+    /**
+     * The number of chars handed to the target so far, counting the bytes
+     * of UTF-8 fragments copied as they are.
+     */
+    private long drained;
+
+    private StringBuilder sb;
+
+    private Writer writer;
+
+    /**
+     * The byte targets, and the buffer that a block of characters is
+     * encoded into.
+     */
+    private ByteBuffer bytes;
+    private byte[] encoded;
+    private OutputStream out;
+
+    /**
+     * The pretty printing state: whether to pretty print, the number of
+     * spaces added for each level, the indentation of the current level,
+     * and whether to sort the keys of objects.
+     */
+    private boolean pretty;
+    private int indentFactor;
+    private int indent;
+    private boolean sortKeys;
+
+    /**
+     * The executor that large arrays and objects are written with, or null.
+     */
+    private ExecutorService executor;
+
+    /**
+     * A high surrogate at the end of the last block, waiting for the low
+     * surrogate at the start of the next one, or 0.
+     */
+    private char high;
+
+
+    /**
+     * Construct a JSONSerializer that writes to a StringBuilder.
+     * @param sb The target.
+     */
+    JSONSerializer(StringBuilder sb) {
+        this.buffer = new char[BUILDER_BUFFER];
+        this.sb = sb;
+    }
+
+
+    /**
+     * Construct a JSONSerializer that writes UTF-8 to a ByteBuffer.
+     * @param bytes The target.
+     */
+    JSONSerializer(ByteBuffer bytes) {
+        this.buffer = new char[WRITER_BUFFER];
+        this.encoded = new byte[WRITER_BUFFER * 3 + 1];
+        this.bytes = bytes;
+    }
+
+
+    /**
+     * Construct a JSONSerializer that writes UTF-8 to an OutputStream.
+     * @param out The target.
+     */
+    JSONSerializer(OutputStream out) {
+        this.buffer = new char[WRITER_BUFFER];
+        this.encoded = new byte[WRITER_BUFFER * 3 + 1];
+        this.out = out;
+    }
+
+
+    /**
+     * Construct a JSONSerializer that writes to a Writer.
+     * @param writer The target.
+     */
+    JSONSerializer(Writer writer) {
+        this.buffer = new char[WRITER_BUFFER];
+        this.writer = writer;
+    }
+
+
+    /**
+     * Make the JSON text of a value.
+     * @param value A value.
+     * @return The text.
+     * @throws JSONException If the value is or contains an invalid number.
+     */
+    static String toString(Object value) throws JSONException {
+        StringBuilder sb = new StringBuilder();
+        JSONSerializer s = new JSONSerializer(sb);
+        try {
+            s.value(value);
+            s.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Make the pretty printed JSON text of a value, with sorted keys.
+     * @param value A value.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation.
+     * @param indent The indentation of the top level.
+     * @return The text.
+     * @throws JSONException If the value is or contains an invalid number.
+     */
+    static String toString(Object value, int indentFactor, int indent)
+            throws JSONException {
+        StringBuilder sb = new StringBuilder();
+        JSONSerializer s = new JSONSerializer(sb);
+        s.setIndent(indentFactor, indent, true);
+        try {
+            s.value(value);
+            s.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Drop the chars that have not been handed to the target, and start
+     * counting the position from 0.
+     */
+    void clear() {
+        this.pos = 0;
+        this.drained = 0;
+        this.high = 0;
+    }
+
+
+    /**
+     * Write the values of a JSONArray, separated by commas, using its
+     * <code>length</code> and <code>opt</code> methods.
+     */
+    void elements(JSONArray ja) throws IOException {
+        if (this.pretty) {
+            prettyElements(ja, null);
+            return;
+        }
+        int len = ja.length();
+        write('[');
+        for (int i = 0; i < len; i += 1) {
+            if (i > 0) {
+                write(',');
+            }
+            value(ja.opt(i));
+        }
+        write(']');
+    }
+
+
+    /**
+     * Write the values of the list of a JSONArray, separated by commas.
+     */
+    void elements(List<Object> list) throws IOException {
+        if (this.pretty) {
+            prettyElements(null, list);
+            return;
+        }
+        int len = list.size();
+        write('[');
+        for (int i = 0; i < len; i += 1) {
+            if (i > 0) {
+                write(',');
+            }
+            value(list.get(i));
+        }
+        write(']');
+    }
+
+
+    /**
+     * Get the way a character that needs an escape is written.
+     * @param c A character at an index found by <code>escapeIndex</code>.
+     * @return 'u' for a \\u escape, or the character that follows the
+     *  backslash.
+     */
+    static char escape(char c) {
+        return c < 0xA0 ? ESCAPES[c] : 'u';
+    }
+
+
+    /**
+     * Find the next character of a string that needs an escape.
+     * @param s A string.
+     * @param from The index to start at.
+     * @return The index of the character, or the length if there is none.
+     */
+    static int escapeIndex(CharSequence s, int from) {
+        int len = s.length();
+        for (int i = from; i < len; i += 1) {
+            char c = s.charAt(i);
+            if (c < 0xA0) {
+                if (ESCAPES[c] != 0 &&
+                        (c != '/' || (i > 0 && s.charAt(i - 1) == '<'))) {
+                    return i;
+                }
+            } else if (c >= '\u2000' && c < '\u2100') {
+                return i;
+            }
+        }
+        return len;
+    }
+
+
+    /**
+     * Find the next char of a part of a char array that needs an escape.
+     * @param chars A char array.
+     * @param from The index to start at.
+     * @param offset The index of the first char of the part.
+     * @param end The index after the last char of the part.
+     * @return The index of the char, or end if there is none.
+     */
+    static int escapeIndex(char[] chars, int from, int offset, int end) {
+        for (int i = from; i < end; i += 1) {
+            char c = chars[i];
+            if (c < 0xA0) {
+                if (ESCAPES[c] != 0 &&
+                        (c != '/' || (i > offset && chars[i - 1] == '<'))) {
+                    return i;
+                }
+            } else if (c >= '\u2000' && c < '\u2100') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+
+    /**
+     * Hand the buffered characters to the target. A surrogate that was
+     * left unpaired is written as '?', as String.getBytes does.
+     */
+    void flush() throws IOException {
+        drain();
+        if (this.high != 0) {
+            this.high = 0;
+            this.encoded[0] = '?';
+            put(1);
+        }
+    }
+
+
+    /**
+     * Hand the buffered characters to the target, keeping a high surrogate
+     * at the end of the block until the next one.
+     */
+    private void drain() throws IOException {
+        if (this.pos > 0) {
+            if (this.writer != null) {
+                this.writer.write(this.buffer, 0, this.pos);
+            } else if (this.sb != null) {
+                this.sb.append(this.buffer, 0, this.pos);
+            } else {
+                put(encode());
+            }
+            this.drained += this.pos;
+            this.pos = 0;
+        }
+    }
+
+
+    /**
+     * Encode the buffered characters as UTF-8.
+     * @return The number of bytes in the encoded buffer.
+     */
+    private int encode() {
+        char[] chars = this.buffer;
+        byte[] b = this.encoded;
+        char high = this.high;
+        int len = this.pos;
+        int i = 0;
+        int n = 0;
+        while (i < len) {
+
+// Most JSON text is ASCII, which is copied by a tight loop.
+
+            if (high == 0) {
+                char c;
+                while (i < len && (c = chars[i]) < 0x80) {
+                    b[n] = (byte)c;
+                    n += 1;
+                    i += 1;
+                }
+                if (i == len) {
+                    break;
+                }
+            }
+            char c = chars[i];
+            i += 1;
+            if (high != 0) {
+                if (Character.isLowSurrogate(c)) {
+                    int cp = Character.toCodePoint(high, c);
+                    high = 0;
+                    b[n] = (byte)(0xF0 | (cp >> 18));
+                    b[n + 1] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+                    b[n + 2] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+                    b[n + 3] = (byte)(0x80 | (cp & 0x3F));
+                    n += 4;
+                    continue;
+                }
+                high = 0;
+                b[n] = '?';
+                n += 1;
+            }
+            if (c < 0x80) {
+                b[n] = (byte)c;
+                n += 1;
+            } else if (c < 0x800) {
+                b[n] = (byte)(0xC0 | (c >> 6));
+                b[n + 1] = (byte)(0x80 | (c & 0x3F));
+                n += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                high = c;
+            } else if (Character.isLowSurrogate(c)) {
+                b[n] = '?';
+                n += 1;
+            } else {
+                b[n] = (byte)(0xE0 | (c >> 12));
+                b[n + 1] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                b[n + 2] = (byte)(0x80 | (c & 0x3F));
+                n += 3;
+            }
+        }
+        this.high = high;
+        return n;
+    }
+
+
+    /**
+     * Get the executor that large arrays and objects are written with.
+     */
+    ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+
+    /**
+     * Determine if an array or object of a given length is written by a
+     * JSONParallelWriter. Only compact text is written that way.
+     */
+    boolean isParallel(int length) {
+        return this.executor != null && !this.pretty &&
+                length > JSONParallelWriter.CHUNK;
+    }
+
+
+    /**
+     * Determine if the values are pretty printed.
+     */
+    boolean isPretty() {
+        return this.pretty;
+    }
+
+
+    /**
+     * Determine if the target takes UTF-8 bytes.
+     */
+    boolean isUTF8() {
+        return this.encoded != null;
+    }
+
+
+    /**
+     * Write the members of a JSONObject using its <code>keys</code> and
+     * <code>opt</code> methods.
+     */
+    void members(JSONObject jo) throws IOException {
+        if (this.pretty) {
+            ArrayList<String> list = new ArrayList<String>();
+            Iterator<String> keys = jo.keys();
+            while (keys.hasNext()) {
+                list.add(keys.next());
+            }
+            prettyMembers(list.toArray(new String[list.size()]), jo, null);
+            return;
+        }
+        Iterator<String> keys = jo.keys();
+        boolean b = false;
+        write('{');
+        while (keys.hasNext()) {
+            if (b) {
+                write(',');
+            }
+            String key = keys.next();
+            quote(key);
+            write(':');
+            value(jo.opt(key));
+            b = true;
+        }
+        write('}');
+    }
+
+
+    /**
+     * Write the members of the map of a JSONObject.
+     */
+    void members(Map<String, Object> map) throws IOException {
+        if (this.pretty) {
+            prettyMembers(map.keySet().toArray(new String[map.size()]), null,
+                    map);
+            return;
+        }
+        Iterator<Map.Entry<String, Object>> i = map.entrySet().iterator();
+        boolean b = false;
+        write('{');
+        while (i.hasNext()) {
+            if (b) {
+                write(',');
+            }
+            Map.Entry<String, Object> e = i.next();
+            quote(e.getKey());
+            write(':');
+            value(e.getValue());
+            b = true;
+        }
+        write('}');
+    }
+
+
+    /**
+     * Write a finite double.
+     */
+    void number(double d) throws IOException {
+        if (this.buffer.length - this.pos < JSONNumberFormat.MAX_LENGTH) {
+            drain();
+        }
+        int end = JSONNumberFormat.formatDouble(d, this.buffer, this.pos);
+        if (end >= 0) {
+            this.pos = end;
+        } else {
+            write(JSONObject.trimZeros(Double.toString(d)));
+        }
+    }
+
+
+    /**
+     * Write a long.
+     */
+    void number(long v) throws IOException {
+        if (this.buffer.length - this.pos < JSONNumberFormat.MAX_LENGTH) {
+            drain();
+        }
+        this.pos = JSONNumberFormat.formatLong(v, this.buffer, this.pos);
+    }
+
+
+    /**
+     * Write a number, formatting its digits straight into the buffer when
+     * it is an integer or a double.
+     * @throws JSONException If the number is not finite.
+     */
+    void number(Number n) throws IOException {
+        JSONObject.testValidity(n);
+        if (this.buffer.length - this.pos < JSONNumberFormat.MAX_LENGTH) {
+            drain();
+        }
+        int end = JSONNumberFormat.format(n, this.buffer, this.pos);
+        if (end >= 0) {
+            this.pos = end;
+        } else {
+            write(JSONObject.numberToString(n));
+        }
+    }
+
+
+    /**
+     * Get the number of chars written so far, for <code>rewind</code>.
+     */
+    long position() {
+        return this.drained + this.pos;
+    }
+
+
+    /**
+     * Write a pretty printed array. An array of one value is kept on one
+     * line.
+     * @param ja A JSONArray to walk with <code>opt</code>, or null.
+     * @param list The list to walk if ja is null.
+     */
+    private void prettyElements(JSONArray ja, List<Object> list)
+            throws IOException {
+        int len = ja != null ? ja.length() : list.size();
+        if (len == 0) {
+            write("[]");
+            return;
+        }
+        write('[');
+        if (len == 1) {
+            value(ja != null ? ja.opt(0) : list.get(0));
+        } else {
+            int indent = this.indent;
+            this.indent = indent + this.indentFactor;
+            write('\n');
+            for (int i = 0; i < len; i += 1) {
+                if (i > 0) {
+                    write(",\n");
+                }
+                spaces(this.indent);
+                value(ja != null ? ja.opt(i) : list.get(i));
+            }
+            this.indent = indent;
+            write('\n');
+            spaces(indent);
+        }
+        write(']');
+    }
+
+
+    /**
+     * Write a pretty printed object. An object of one member is kept on
+     * one line.
+     * @param keys The keys, which are sorted in place if keys are sorted.
+     * @param jo A JSONObject to get the values from with <code>opt</code>,
+     *  or null.
+     * @param map The map to get the values from if jo is null.
+     */
+    private void prettyMembers(String[] keys, JSONObject jo,
+            Map<String, Object> map) throws IOException {
+        int n = keys.length;
+        if (n == 0) {
+            write("{}");
+            return;
+        }
+        if (this.sortKeys) {
+            Arrays.sort(keys);
+        }
+        write('{');
+        if (n == 1) {
+            quote(keys[0]);
+            write(": ");
+            value(jo != null ? jo.opt(keys[0]) : map.get(keys[0]));
+        } else {
+            int indent = this.indent;
+            this.indent = indent + this.indentFactor;
+            for (int i = 0; i < n; i += 1) {
+                write(i > 0 ? ",\n" : "\n");
+                spaces(this.indent);
+                quote(keys[i]);
+                write(": ");
+                value(jo != null ? jo.opt(keys[i]) : map.get(keys[i]));
+            }
+            this.indent = indent;
+            write('\n');
+            spaces(indent);
+        }
+        write('}');
+    }
+
+
+    /**
+     * Hand encoded bytes to the byte target.
+     * @param n The number of bytes.
+     */
+    private void put(int n) throws IOException {
+        put(this.encoded, 0, n);
+    }
+
+
+    /**
+     * Hand bytes to the byte target.
+     */
+    private void put(byte[] b, int offset, int length) throws IOException {
+        if (this.out != null) {
+            this.out.write(b, offset, length);
+        } else {
+            this.bytes.put(b, offset, length);
+        }
+    }
+
+
+    /**
+     * Write a string in double quotes with backslash sequences in all the
+     * right places, as <code>JSONObject.quote</code> does. Runs of
+     * characters that need no escape are copied in bulk.
+     * @param string A string, or null for an empty string.
+     */
+    void quote(CharSequence string) throws IOException {
+        write('"');
+        if (string != null) {
+            int len = string.length();
+            int start = 0;
+            int i;
+            while ((i = escapeIndex(string, start)) < len) {
+                write(string, start, i);
+                writeEscape(string.charAt(i));
+                start = i + 1;
+            }
+            write(string, start, len);
+        }
+        write('"');
+    }
+
+
+    /**
+     * Write a part of a char array in double quotes, as
+     * <code>quote(CharSequence)</code> does.
+     * @param chars A char array.
+     * @param offset The index of the first char.
+     * @param length The number of chars.
+     */
+    void quote(char[] chars, int offset, int length) throws IOException {
+        write('"');
+        int end = offset + length;
+        int start = offset;
+        int i;
+        while ((i = escapeIndex(chars, start, offset, end)) < end) {
+            write(chars, start, i - start);
+            writeEscape(chars[i]);
+            start = i + 1;
+        }
+        write(chars, start, end - start);
+        write('"');
+    }
+
+
+    /**
+     * Drop the chars written after a position, if they have not been handed
+     * to the target yet.
+     * @param position A position from <code>position</code>.
+     * @return true if the chars were dropped.
+     */
+    boolean rewind(long position) {
+        if (position < this.drained) {
+            return false;
+        }
+        this.pos = (int)(position - this.drained);
+        return true;
+    }
+
+
+    /**
+     * Write the large plain arrays and objects that follow with the threads
+     * of an executor. See JSONParallelWriter.
+     * @param executor The executor, or null to write by the calling thread.
+     */
+    void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+
+    /**
+     * Pretty print the values that follow.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation.
+     * @param indent The indentation of the top level.
+     * @param sortKeys true to write the keys of objects in sorted order,
+     *  false to write them in the order of the objects.
+     */
+    void setIndent(int indentFactor, int indent, boolean sortKeys) {
+        this.pretty = true;
+        this.indentFactor = indentFactor;
+        this.indent = indent;
+        this.sortKeys = sortKeys;
+    }
+
+
+    /**
+     * Write spaces for indentation.
+     */
+    private void spaces(int n) throws IOException {
+        for (int i = 0; i < n; i += 1) {
+            write(' ');
+        }
+    }
+
+
+    /**
+     * Write the JSON text of a value.
+     * @param value A value.
+     * @throws JSONException If the value is or contains an invalid number.
+     */
+    void value(Object value) throws IOException {
+        if (value == null || value.equals(JSONObject.NULL)) {
+            write("null");
+        } else if (value instanceof String) {
+            quote((String)value);
+        } else if (value instanceof JSONObject) {
+            ((JSONObject)value).serialize(this);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray)value).serialize(this);
+        } else if (value instanceof JSONFragment) {
+            ((JSONFragment)value).write(this);
+        } else if (value instanceof JSONString) {
+            String s;
+            try {
+                s = ((JSONString)value).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException("Bad value from toJSONString: ", e);
+            }
+            write(s);
+        } else if (value instanceof Number) {
+            number((Number)value);
+        } else if (value instanceof Boolean) {
+            write(((Boolean)value).booleanValue() ? "true" : "false");
+        } else if (value instanceof Map) {
+            toJSONObject((Map<?, ?>)value).serialize(this);
+        } else if (value instanceof Collection) {
+            toJSONArray((Collection<?>)value).serialize(this);
+        } else if (value.getClass().isArray()) {
+            new JSONArray(value).serialize(this);
+        } else if (value instanceof CharSequence) {
+            quote((CharSequence)value);
+        } else {
+            quote(value.toString());
+        }
+    }
+
+
+    /**
+     * Make a JSONArray of the values of a Collection, wrapped as the
+     * JSONArray constructor does.
+     */
+    private static JSONArray toJSONArray(Collection<?> collection) {
+        JSONArray ja = new JSONArray(collection.size());
+        Iterator<?> i = collection.iterator();
+        while (i.hasNext()) {
+            ja.put(wrap(i.next()));
+        }
+        return ja;
+    }
+
+
+    /**
+     * Make a JSONObject of the entries of a Map, wrapped as the JSONObject
+     * constructor does. Keys that are not Strings are written as their
+     * <code>String.valueOf</code>.
+     */
+    private static JSONObject toJSONObject(Map<?, ?> map) {
+        JSONObject jo = new JSONObject(map.size());
+        Iterator<? extends Map.Entry<?, ?>> i = map.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<?, ?> e = i.next();
+            jo.map.put(String.valueOf(e.getKey()), wrap(e.getValue()));
+        }
+        return jo;
+    }
+
+
+    /**
+     * Wrap a value of a Map or Collection as the JSONObject constructor
+     * does. Nested Maps and Collections are kept as they are, since
+     * <code>value</code> converts them when they are reached.
+     */
+    private static Object wrap(Object value) {
+        return value instanceof Map || value instanceof Collection ?
+                value : JSONObject.wrap(value, false);
+    }
+
+
+    /**
+     * Write a character.
+     */
+    void write(char c) throws IOException {
+        if (this.pos == this.buffer.length) {
+            drain();
+        }
+        this.buffer[this.pos] = c;
+        this.pos += 1;
+    }
+
+
+    /**
+     * Write characters of an array.
+     */
+    void write(char[] chars, int offset, int length) throws IOException {
+        if (length > this.buffer.length - this.pos) {
+            drain();
+            if (length > this.buffer.length && this.encoded == null) {
+                if (this.writer != null) {
+                    this.writer.write(chars, offset, length);
+                } else {
+                    this.sb.append(chars, offset, length);
+                }
+                this.drained += length;
+                return;
+            }
+        }
+        while (length > 0) {
+            if (this.pos == this.buffer.length) {
+                drain();
+            }
+            int n = Math.min(length, this.buffer.length - this.pos);
+            System.arraycopy(chars, offset, this.buffer, this.pos, n);
+            this.pos += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+
+    /**
+     * Write a part of a string as it is.
+     */
+    void write(CharSequence s, int start, int end) throws IOException {
+        if (s instanceof String) {
+            String string = (String)s;
+            while (start < end) {
+                if (this.pos == this.buffer.length) {
+                    drain();
+                }
+                int n = Math.min(end - start, this.buffer.length - this.pos);
+                string.getChars(start, start + n, this.buffer, this.pos);
+                this.pos += n;
+                start += n;
+            }
+        } else {
+            for (int i = start; i < end; i += 1) {
+                write(s.charAt(i));
+            }
+        }
+    }
+
+
+    /**
+     * Write a string as it is.
+     */
+    void write(String s) throws IOException {
+        write(s, 0, s.length());
+    }
+
+
+    /**
+     * Write the escape for a character found by <code>escapeIndex</code>.
+     */
+    private void writeEscape(char c) throws IOException {
+        char e = escape(c);
+        write('\\');
+        if (e == 'u') {
+            write('u');
+            write(HEX[(c >> 12) & 0xF]);
+            write(HEX[(c >> 8) & 0xF]);
+            write(HEX[(c >> 4) & 0xF]);
+            write(HEX[c & 0xF]);
+        } else {
+            write(e);
+        }
+    }
+
+
+    /**
+     * Write UTF-8 text as it is. For an OutputStream or a ByteBuffer the
+     * buffered characters are handed over first and the bytes are copied
+     * after them without being decoded.
+     */
+    void writeUTF8(byte[] b, int offset, int length) throws IOException {
+        if (this.encoded == null) {
+            String s = new String(b, offset, length, "UTF-8");
+            write(s, 0, s.length());
+            return;
+        }
+        drain();
+        if (this.high != 0) {
+            this.high = 0;
+            this.encoded[0] = '?';
+            put(1);
+        }
+        put(b, offset, length);
+        this.drained += length;
+    }
+}
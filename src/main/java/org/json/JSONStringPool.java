@@ -0,0 +1,166 @@
+package org.json;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A JSONStringPool shares the short strings that repeat across parsed
+ * documents, such as country codes, status names and currencies. Give it to
+ * <code>JSONTokener.setStringPool</code>, and each string the tokener reads
+ * that is not longer than the pool's maximum length is looked up in the
+ * pool before a new String is made.
+ * <p>
+ * The pool has a fixed number of slots. A string can only live in the slot
+ * selected by its hash, and a new string replaces the one in its slot, so
+ * the pool never grows and rarely used strings are evicted by frequently
+ * used ones. The pool is lock-free and can be shared by any number of
+ * threads and parses. The hit and miss counters tell how well it works for
+ * a given workload.
+ */
+public final class JSONStringPool {
+
+    /**
+     * The counters are striped by thread to keep threads from contending
+     * on them. Each stripe has a hit and a miss counter, 64 bytes apart.
+     */
+    private static final int STRIPES = 16;
+    private static final int MISS = 8;
+    private static final int STRIDE = 16;
+
+    private final AtomicLongArray counters =
+            new AtomicLongArray(STRIPES * STRIDE);
+
+    private final int mask;
+
+    private final int maxLength;
+
+    private final AtomicReferenceArray<String> slots;
+
+
+    /**
+     * Construct a JSONStringPool with 4096 slots for strings of up to 32
+     * characters.
+     */
+    public JSONStringPool() {
+        this(4096, 32);
+    }
+
+
+    /**
+     * Construct a JSONStringPool.
+     * @param capacity The number of slots, which is rounded up to a power
+     *  of two.
+     * @param maxLength The length of the longest string to pool.
+     */
+    public JSONStringPool(int capacity, int maxLength) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Bad capacity: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+        this.slots = new AtomicReferenceArray<String>(size);
+    }
+
+
+    /**
+     * Empty the pool and reset the counters.
+     */
+    public void clear() {
+        for (int i = 0; i <= this.mask; i += 1) {
+            this.slots.set(i, null);
+        }
+        for (int i = 0; i < STRIPES * STRIDE; i += 1) {
+            this.counters.set(i, 0);
+        }
+    }
+
+
+    /**
+     * Get the number of lookups that found their string in the pool.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return sum(0);
+    }
+
+
+    /**
+     * Get the length of the longest string that is pooled.
+     * @return The maximum length.
+     */
+    public int getMaxLength() {
+        return this.maxLength;
+    }
+
+
+    /**
+     * Get the number of lookups that had to make a new String. Strings
+     * longer than the maximum length are not counted.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return sum(MISS);
+    }
+
+
+    /**
+     * Get the shared String with the characters of a CharSequence.
+     * @param cs A CharSequence.
+     * @return A String equal to the CharSequence. It is a shared instance
+     *  unless the sequence is longer than the maximum length.
+     */
+    public String intern(CharSequence cs) {
+        int len = cs.length();
+        if (len > this.maxLength) {
+            return cs.toString();
+        }
+        int h = 0;
+        for (int i = 0; i < len; i += 1) {
+            h = 31 * h + cs.charAt(i);
+        }
+        int slot = (h ^ (h >>> 16)) & this.mask;
+        String s = this.slots.get(slot);
+        if (s != null && s.length() == len) {
+            int i = 0;
+            while (i < len && s.charAt(i) == cs.charAt(i)) {
+                i += 1;
+            }
+            if (i == len) {
+                this.counters.incrementAndGet(stripe());
+                return s;
+            }
+        }
+        this.counters.incrementAndGet(stripe() + MISS);
+        s = cs.toString();
+        this.slots.set(slot, s);
+        return s;
+    }
+
+
+    private static int stripe() {
+        return ((int)Thread.currentThread().getId() & (STRIPES - 1)) * STRIDE;
+    }
+
+
+    private long sum(int offset) {
+        long n = 0;
+        for (int i = 0; i < STRIPES; i += 1) {
+            n += this.counters.get(i * STRIDE + offset);
+        }
+        return n;
+    }
+
+
+    /**
+     * Make a printable summary of the counters.
+     * @return A string such as <code>{"hits":10,"misses":2}</code>.
+     */
+    @Override
+    public String toString() {
+        return "{\"hits\":" + getHits() + ",\"misses\":" + getMisses() + "}";
+    }
+}
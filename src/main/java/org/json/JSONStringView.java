@@ -0,0 +1,171 @@
+package org.json;
+
+/**
+ * A JSONStringView is a string value that refers to a range of the JSON
+ * text it was parsed from instead of holding its own copy of the characters.
+ * The characters are copied into a String only when <code>toString</code> or
+ * <code>detach</code> is called. From then on the view no longer refers to
+ * the source text. A view can be read and detached by many threads at once.
+ * <p>
+ * JSONStringViews are produced by a JSONTokener when string views are
+ * enabled with <code>setStringViews</code>. Only strings without escape
+ * sequences are kept as views.
+ */
+public final class JSONStringView implements CharSequence {
+
+    /**
+     * The JSON text, or null once the view has been detached. It is only
+     * cleared after the String has been set, so a thread that finds it null
+     * finds the String.
+     */
+    private volatile CharSequence source;
+
+    /**
+     * The index of the first character in the source.
+     */
+    private final int offset;
+
+    /**
+     * The number of characters.
+     */
+    private final int length;
+
+    /**
+     * The characters as a String, made on first use.
+     */
+    private volatile String string;
+
+
+    /**
+     * Construct a view of a range of characters.
+     * @param source The text holding the characters.
+     * @param start The index of the first character.
+     * @param end The index after the last character.
+     */
+    public JSONStringView(CharSequence source, int start, int end) {
+        if (start < 0 || end < start || end > source.length()) {
+            throw new IndexOutOfBoundsException("Bad range [" + start +
+                    ", " + end + ")");
+        }
+        this.source = source;
+        this.offset = start;
+        this.length = end - start;
+    }
+
+
+    public char charAt(int index) {
+        CharSequence src = source();
+        if (src == null) {
+            return this.string.charAt(index);
+        }
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return src.charAt(this.offset + index);
+    }
+
+
+    /**
+     * Copy the characters into a String and stop referring to the source
+     * text.
+     * @return this.
+     */
+    public JSONStringView detach() {
+        CharSequence src = source();
+        if (src != null) {
+            this.string = src.subSequence(this.offset,
+                    this.offset + this.length).toString();
+            this.source = null;
+        }
+        return this;
+    }
+
+
+    /**
+     * Determine if the view still refers to the source text.
+     * @return true if the characters have not been copied yet.
+     */
+    public boolean isAttached() {
+        return this.string == null;
+    }
+
+
+    public int length() {
+        return this.length;
+    }
+
+
+    /**
+     * Get the source text, or null if the view has been detached, in which
+     * case the String is set.
+     */
+    private CharSequence source() {
+        return this.string == null ? this.source : null;
+    }
+
+
+    public CharSequence subSequence(int start, int end) {
+        CharSequence src = source();
+        if (src == null) {
+            return this.string.subSequence(start, end);
+        }
+        if (start < 0 || end < start || end > this.length) {
+            throw new IndexOutOfBoundsException("Bad range [" + start +
+                    ", " + end + ")");
+        }
+        return new JSONStringView(src, this.offset + start,
+                this.offset + end);
+    }
+
+
+    /**
+     * Two JSONStringViews are equal if they hold the same characters.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (!(object instanceof JSONStringView)) {
+            return false;
+        }
+        JSONStringView that = (JSONStringView)object;
+        if (that.length != this.length) {
+            return false;
+        }
+        for (int i = 0; i < this.length; i += 1) {
+            if (charAt(i) != that.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * The hash code is the same as that of the equivalent String.
+     */
+    @Override
+    public int hashCode() {
+        CharSequence src = source();
+        if (src == null) {
+            return this.string.hashCode();
+        }
+        int h = 0;
+        for (int i = 0; i < this.length; i += 1) {
+            h = 31 * h + src.charAt(this.offset + i);
+        }
+        return h;
+    }
+
+
+    /**
+     * Get the characters as a String. The view is detached from the source
+     * text.
+     * @return A String.
+     */
+    @Override
+    public String toString() {
+        return detach().string;
+    }
+}
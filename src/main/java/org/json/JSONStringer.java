@@ -24,7 +24,9 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
-import java.io.StringWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
 
 /**
  * JSONStringer provides a quick and convenient way of producing JSON text.
@@ -50,18 +52,105 @@ import java.io.StringWriter;
  * <p>
  * The first method called must be <code>array</code> or <code>object</code>.
  * There are no methods for adding commas or colons. JSONStringer adds them for
- * you. Objects and arrays can be nested up to 20 levels deep.
+ * you. Objects and arrays can be nested up to 20 levels deep, unless
+ * <code>setMaxDepth</code> allows more.
  * <p>
  * This can sometimes be easier than using a JSONObject to build a string.
+ * <p>
+ * The text is built in a char buffer that is not synchronized. After
+ * <code>reset</code>, the same JSONStringer and its buffer can build another
+ * text. Code that builds many small texts can take a JSONStringer from a
+ * per-thread pool with <code>acquire</code> and give it back with
+ * <code>release</code>. A JSONStringer must not be used by more than one
+ * thread at a time.
  * @author JSON.org
  * @version 2008-09-18
  */
 public class JSONStringer extends JSONWriter {
+
+    /**
+     * The largest buffer, in chars, that is kept in the pool.
+     */
+    private static final int MAX_POOLED = 1 << 16;
+
+    /**
+     * The JSONStringer of each thread that is not in use.
+     */
+    private static final ThreadLocal<JSONStringer> POOL =
+            new ThreadLocal<JSONStringer>();
+
+    /**
+     * The buffer that the text is built in.
+     */
+    private final Chars chars;
+
     /**
-     * Make a fresh JSONStringer. It can be used to build one JSON text.
+     * Make a fresh JSONStringer. It can be used to build one JSON text, or
+     * more after <code>reset</code>.
      */
     public JSONStringer() {
-        super(new StringWriter());
+        this(new Chars());
+    }
+
+    private JSONStringer(Chars chars) {
+        super(chars);
+        this.chars = chars;
+    }
+
+    /**
+     * Take the JSONStringer of the current thread from the pool, or make a
+     * new one if the pool's is in use. Call <code>release</code> when the
+     * result has been taken.
+     * @return A fresh JSONStringer.
+     */
+    public static JSONStringer acquire() {
+        JSONStringer js = POOL.get();
+        if (js == null) {
+            return new JSONStringer();
+        }
+        POOL.set(null);
+        return js;
+    }
+
+    /**
+     * Get the buffer that holds the JSON text. It is not copied, so it is
+     * only valid until the JSONStringer is reset or released.
+     * @return The buffer, with the text in its first <code>length()</code>
+     *  chars.
+     */
+    public char[] getBuffer() {
+        return this.chars.buf;
+    }
+
+    /**
+     * Get the length of the JSON text.
+     * @return The number of chars, or 0 if the text is not complete.
+     */
+    public int length() {
+        return this.mode == 'd' ? this.chars.count : 0;
+    }
+
+    /**
+     * Reset this JSONStringer and give it back to the pool of the current
+     * thread. It must not be used afterwards. Its key check and depth limit
+     * are set back to the defaults for the next caller. A JSONStringer whose
+     * buffer has grown very large is dropped instead.
+     */
+    public void release() {
+        if (this.chars.buf.length <= MAX_POOLED) {
+            reset();
+            restoreDefaults();
+            POOL.set(this);
+        }
+    }
+
+    /**
+     * Discard the text, so that a new one can be built in the same buffer.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        this.chars.count = 0;
     }
 
     /**
@@ -76,4 +165,64 @@ public class JSONStringer extends JSONWriter {
     public String toString() {
         return this.mode == 'd' ? this.writer.toString() : "";
     }
+
+    /**
+     * Return the JSON text encoded as UTF-8.
+     * @return The bytes, or an empty array if the text is not complete.
+     */
+    public byte[] toUTF8() {
+        int len = length();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len + 16);
+        try {
+            JSONSerializer s = new JSONSerializer(out);
+            s.write(this.chars.buf, 0, len);
+            s.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A growable char buffer. Unlike StringWriter, it does not synchronize.
+     */
+    private static final class Chars extends Writer {
+        char[] buf = new char[256];
+        int count;
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public String toString() {
+            return new String(this.buf, 0, this.count);
+        }
+
+        private void ensure(int end) {
+            if (end > this.buf.length) {
+                char[] b = new char[Math.max(this.buf.length * 2, end)];
+                System.arraycopy(this.buf, 0, b, 0, this.count);
+                this.buf = b;
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            ensure(this.count + len);
+            System.arraycopy(cbuf, off, this.buf, this.count, len);
+            this.count += len;
+        }
+
+        @Override
+        public void write(int c) {
+            ensure(this.count + 1);
+            this.buf[this.count] = (char)c;
+            this.count += 1;
+        }
+    }
 }
@@ -0,0 +1,978 @@
+package org.json;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A JSONTape is a compact, read-only form of a JSON text. Instead of a tree
+ * of JSONObjects and JSONArrays, the parsed text is kept in two arrays: a
+ * tape of <code>long</code> entries, one or two per value, and a buffer
+ * holding the characters of all strings and keys.
+ * <p>
+ * Values are identified by their position on the tape, an <code>int</code>.
+ * The root value is at position 0. Navigation methods such as
+ * <code>find</code>, <code>index</code>, <code>first</code> and
+ * <code>next</code> take a position and return another one, or -1 if there
+ * is no such value, so walking a JSONTape allocates nothing. The
+ * <code>type</code> of a position is one of these characters:
+ * <ul>
+ * <li><code>{</code> an object. Its members follow as key/value pairs.</li>
+ * <li><code>[</code> an array.</li>
+ * <li><code>"</code> a string.</li>
+ * <li><code>l</code> an integer that fits in a long.</li>
+ * <li><code>d</code> a number with a fraction or an exponent.</li>
+ * <li><code>N</code> an integer too large for a long, kept as text.</li>
+ * <li><code>t</code>, <code>f</code> and <code>n</code> for
+ *     <code>true</code>, <code>false</code> and <code>null</code>.</li>
+ * </ul>
+ * The <code>toValue</code> method converts any part of a JSONTape into the
+ * usual JSONObject, JSONArray and value objects. The <code>view</code>
+ * method instead returns a read-only JSONObject or JSONArray that decodes
+ * its members from the tape each time they are accessed.
+ * <p>
+ * A JSONTape can be kept outside of the Java heap. <code>toByteBuffer</code>
+ * copies it into a ByteBuffer, for example a direct one, and
+ * <code>wrap</code> makes a JSONTape that reads from such a buffer in
+ * place. <code>store</code> writes the same form to a file and
+ * <code>map</code> maps that file into memory, so a large document costs
+ * the garbage collector no more than a few small objects.
+ * <p>
+ * A JSONTape only accepts strict JSON texts: comments, single quotes,
+ * unquoted strings and the other forms tolerated by JSONTokener are
+ * rejected.
+ * <p>
+ * Each tape entry has the type in its top 8 bits. The other 56 bits hold,
+ * for a string, the offset of its characters in the string buffer, which
+ * starts with the length in two characters. For an object or array they
+ * hold the number of members in the upper 24 bits (saturated) and the
+ * position after the closing entry in the lower 32 bits. An <code>l</code>
+ * or <code>d</code> entry is followed by a second entry holding the long
+ * value or the bits of the double.
+ */
+public final class JSONTape {
+
+    private static final int TYPE_SHIFT = 56;
+    private static final long PAYLOAD_MASK = (1L << TYPE_SHIFT) - 1;
+    private static final long LINK_MASK = 0xFFFFFFFFL;
+    private static final int COUNT_SHIFT = 32;
+    private static final long COUNT_MAX = 0xFFFFFFL;
+
+    /**
+     * The first four bytes of the binary form: "JTP" and a version.
+     */
+    private static final int MAGIC = 0x4A545001;
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * The exact powers of ten that a double can hold.
+     */
+    private static final double[] POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
+
+    /**
+     * The tape entries.
+     */
+    private long[] tape;
+
+    /**
+     * The number of entries on the tape.
+     */
+    private int tapeLength;
+
+    /**
+     * The characters of strings and keys.
+     */
+    private char[] chars;
+
+    /**
+     * The number of characters in the string buffer.
+     */
+    private int charsLength;
+
+    /**
+     * The tape entries and the characters when the JSONTape is kept in a
+     * ByteBuffer. Either these or the arrays are used.
+     */
+    private LongBuffer tapeBuffer;
+    private CharBuffer charBuffer;
+
+    /**
+     * The text being parsed. It is only used during construction.
+     */
+    private CharSequence text;
+
+    /**
+     * The index of the next character of the text to parse.
+     */
+    private int at;
+
+
+    private JSONTape(CharSequence text) throws JSONException {
+        this.text = text;
+        int n = text.length();
+        this.tape = new long[Math.max(16, n / 4)];
+        this.chars = new char[Math.max(16, n / 2)];
+        skipWhite();
+        parseValue();
+        skipWhite();
+        if (this.at < n) {
+            throw syntaxError("Text continues after the value");
+        }
+        this.text = null;
+        if (this.tape.length > this.tapeLength) {
+            long[] t = new long[this.tapeLength];
+            System.arraycopy(this.tape, 0, t, 0, this.tapeLength);
+            this.tape = t;
+        }
+        if (this.chars.length > this.charsLength) {
+            char[] c = new char[this.charsLength];
+            System.arraycopy(this.chars, 0, c, 0, this.charsLength);
+            this.chars = c;
+        }
+    }
+
+
+    private JSONTape(LongBuffer tape, CharBuffer chars) {
+        this.tapeBuffer = tape;
+        this.tapeLength = tape.limit();
+        this.charBuffer = chars;
+        this.charsLength = chars.limit();
+    }
+
+
+    /**
+     * Parse a JSON text into a JSONTape.
+     * @param text A strict JSON text.
+     * @return A JSONTape.
+     * @throws JSONException If there is a syntax error.
+     */
+    public static JSONTape parse(String text) throws JSONException {
+        return new JSONTape(text);
+    }
+
+
+    /**
+     * Parse a JSON text held in an array of characters into a JSONTape.
+     * The array is not kept.
+     * @param text A strict JSON text.
+     * @return A JSONTape.
+     * @throws JSONException If there is a syntax error.
+     */
+    public static JSONTape parse(char[] text) throws JSONException {
+        return new JSONTape(CharBuffer.wrap(text));
+    }
+
+
+    private void emit(char type, long payload) {
+        if (this.tapeLength == this.tape.length) {
+            long[] t = new long[this.tape.length * 2];
+            System.arraycopy(this.tape, 0, t, 0, this.tapeLength);
+            this.tape = t;
+        }
+        this.tape[this.tapeLength] = ((long)type << TYPE_SHIFT) | payload;
+        this.tapeLength += 1;
+    }
+
+
+    private void emitRaw(long value) {
+        emit((char)0, 0);
+        this.tape[this.tapeLength - 1] = value;
+    }
+
+
+    private void appendChar(char c) {
+        if (this.charsLength == this.chars.length) {
+            char[] b = new char[this.chars.length * 2];
+            System.arraycopy(this.chars, 0, b, 0, this.charsLength);
+            this.chars = b;
+        }
+        this.chars[this.charsLength] = c;
+        this.charsLength += 1;
+    }
+
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at " + this.at);
+    }
+
+
+    private char peek() {
+        return this.at < this.text.length() ? this.text.charAt(this.at) : 0;
+    }
+
+
+    private void skipWhite() {
+        int n = this.text.length();
+        while (this.at < n) {
+            char c = this.text.charAt(this.at);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            this.at += 1;
+        }
+    }
+
+
+    private void expect(String word) throws JSONException {
+        for (int i = 0; i < word.length(); i += 1) {
+            if (peek() != word.charAt(i)) {
+                throw syntaxError("Expected '" + word + "'");
+            }
+            this.at += 1;
+        }
+    }
+
+
+    private void parseValue() throws JSONException {
+        switch (peek()) {
+        case '{':
+            parseObject();
+            break;
+        case '[':
+            parseArray();
+            break;
+        case '"':
+            parseString();
+            break;
+        case 't':
+            expect("true");
+            emit('t', 0);
+            break;
+        case 'f':
+            expect("false");
+            emit('f', 0);
+            break;
+        case 'n':
+            expect("null");
+            emit('n', 0);
+            break;
+        default:
+            parseNumber();
+        }
+    }
+
+
+    private void parseObject() throws JSONException {
+        int start = this.tapeLength;
+        long count = 0;
+        emit('{', 0);
+        this.at += 1;
+        skipWhite();
+        if (peek() == '}') {
+            this.at += 1;
+        } else {
+            for (;;) {
+                if (peek() != '"') {
+                    throw syntaxError("Expected a key");
+                }
+                parseString();
+                skipWhite();
+                if (peek() != ':') {
+                    throw syntaxError("Expected a ':' after a key");
+                }
+                this.at += 1;
+                skipWhite();
+                parseValue();
+                count += 1;
+                skipWhite();
+                char c = peek();
+                this.at += 1;
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected a ',' or '}'");
+                }
+                skipWhite();
+            }
+        }
+        close(start, '}', count);
+    }
+
+
+    private void parseArray() throws JSONException {
+        int start = this.tapeLength;
+        long count = 0;
+        emit('[', 0);
+        this.at += 1;
+        skipWhite();
+        if (peek() == ']') {
+            this.at += 1;
+        } else {
+            for (;;) {
+                parseValue();
+                count += 1;
+                skipWhite();
+                char c = peek();
+                this.at += 1;
+                if (c == ']') {
+                    break;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected a ',' or ']'");
+                }
+                skipWhite();
+            }
+        }
+        close(start, ']', count);
+    }
+
+
+    /**
+     * Emit the closing entry of a container and link the opening entry to
+     * the position after it.
+     */
+    private void close(int start, char type, long count) {
+        emit(type, start);
+        long c = Math.min(count, COUNT_MAX);
+        this.tape[start] |= (c << COUNT_SHIFT) | this.tapeLength;
+    }
+
+
+    private void parseString() throws JSONException {
+        int n = this.text.length();
+        int offset = this.charsLength;
+        appendChar((char)0);
+        appendChar((char)0);
+        this.at += 1;
+        for (;;) {
+            if (this.at >= n) {
+                throw syntaxError("Unterminated string");
+            }
+            char c = this.text.charAt(this.at);
+            this.at += 1;
+            if (c == '"') {
+                break;
+            }
+            if (c < ' ') {
+                throw syntaxError("Unescaped control character");
+            }
+            if (c == '\\') {
+                if (this.at >= n) {
+                    throw syntaxError("Unterminated string");
+                }
+                c = this.text.charAt(this.at);
+                this.at += 1;
+                switch (c) {
+                case 'b':
+                    c = '\b';
+                    break;
+                case 't':
+                    c = '\t';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'f':
+                    c = '\f';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 'u':
+                    int u = 0;
+                    for (int i = 0; i < 4; i += 1) {
+                        int h = JSONTokener.dehexchar(peek());
+                        if (h < 0) {
+                            throw syntaxError("Illegal escape.");
+                        }
+                        u = (u << 4) | h;
+                        this.at += 1;
+                    }
+                    c = (char)u;
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    break;
+                default:
+                    throw syntaxError("Illegal escape.");
+                }
+            }
+            appendChar(c);
+        }
+        int len = this.charsLength - offset - 2;
+        this.chars[offset] = (char)(len >>> 16);
+        this.chars[offset + 1] = (char)len;
+        emit('"', offset);
+    }
+
+
+    private void parseNumber() throws JSONException {
+        int start = this.at;
+        boolean negative = peek() == '-';
+        if (negative) {
+            this.at += 1;
+        }
+        char c = peek();
+        if (c < '0' || c > '9') {
+            throw syntaxError("Missing value");
+        }
+        long mantissa = 0;
+        int digits = 0;
+        boolean overflow = false;
+        if (c == '0') {
+            this.at += 1;
+        } else {
+            while ((c = peek()) >= '0' && c <= '9') {
+                if (mantissa > (Long.MAX_VALUE - 9) / 10) {
+                    overflow = true;
+                } else {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        digits += 1;
+                    }
+                }
+                this.at += 1;
+            }
+        }
+        int scale = 0;
+        boolean integral = true;
+        if (peek() == '.') {
+            integral = false;
+            this.at += 1;
+            int fractionStart = this.at;
+            while ((c = peek()) >= '0' && c <= '9') {
+                if (!overflow && mantissa <= (Long.MAX_VALUE - 9) / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        digits += 1;
+                    }
+                    scale -= 1;
+                } else {
+                    overflow = true;
+                }
+                this.at += 1;
+            }
+            if (this.at == fractionStart) {
+                throw syntaxError("Expected a digit");
+            }
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            integral = false;
+            this.at += 1;
+            boolean minus = false;
+            if (peek() == '+' || peek() == '-') {
+                minus = peek() == '-';
+                this.at += 1;
+            }
+            int exponentStart = this.at;
+            int exponent = 0;
+            while ((c = peek()) >= '0' && c <= '9') {
+                if (exponent < 100000) {
+                    exponent = exponent * 10 + (c - '0');
+                }
+                this.at += 1;
+            }
+            if (this.at == exponentStart) {
+                throw syntaxError("Expected a digit");
+            }
+            scale += minus ? -exponent : exponent;
+        }
+        if (integral && !overflow) {
+            emit('l', 0);
+            emitRaw(negative ? -mantissa : mantissa);
+        } else if (integral) {
+            int offset = this.charsLength;
+            appendChar((char)0);
+            appendChar((char)0);
+            for (int i = start; i < this.at; i += 1) {
+                appendChar(this.text.charAt(i));
+            }
+            int len = this.at - start;
+            this.chars[offset] = (char)(len >>> 16);
+            this.chars[offset + 1] = (char)len;
+            emit('N', offset);
+        } else {
+            double d;
+            if (!overflow && digits <= 15 && scale >= -22 && scale <= 22) {
+                d = scale < 0 ? mantissa / POWERS[-scale] :
+                        mantissa * POWERS[scale];
+                if (negative) {
+                    d = -d;
+                }
+            } else {
+                d = Double.parseDouble(
+                        this.text.subSequence(start, this.at).toString());
+            }
+            emit('d', 0);
+            emitRaw(Double.doubleToRawLongBits(d));
+        }
+    }
+
+
+    /**
+     * Make a JSONTape that reads from a ByteBuffer holding the binary form
+     * made by <code>toByteBuffer</code> or <code>store</code>. The contents
+     * are not copied, and must not be changed while the JSONTape is in use.
+     * @param buffer A ByteBuffer, from its position to its limit.
+     * @return A JSONTape.
+     * @throws JSONException If the buffer does not hold a JSONTape.
+     */
+    public static JSONTape wrap(ByteBuffer buffer) throws JSONException {
+        ByteBuffer b = buffer.slice();
+        if (b.remaining() < HEADER_SIZE || b.getInt(0) != MAGIC) {
+            throw new JSONException("Not a JSONTape.");
+        }
+        int tapeLength = b.getInt(4);
+        int charsLength = b.getInt(8);
+        long size = HEADER_SIZE + 8L * tapeLength + 2L * charsLength;
+        if (tapeLength < 0 || charsLength < 0 || size > b.remaining()) {
+            throw new JSONException("Truncated JSONTape.");
+        }
+        b.position(HEADER_SIZE);
+        LongBuffer tape = b.slice().asLongBuffer();
+        tape.limit(tapeLength);
+        b.position(HEADER_SIZE + 8 * tapeLength);
+        CharBuffer chars = b.slice().asCharBuffer();
+        chars.limit(charsLength);
+        return new JSONTape(tape, chars);
+    }
+
+
+    /**
+     * Map a file written by <code>store</code> into memory and make a
+     * JSONTape that reads from it.
+     * @param file A file.
+     * @return A JSONTape.
+     * @throws JSONException If the file cannot be read or does not hold a
+     *  JSONTape.
+     */
+    public static JSONTape map(File file) throws JSONException {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size()));
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Copy the JSONTape into a new ByteBuffer in its binary form. The
+     * buffer is ready to be read, and can be given to <code>wrap</code>.
+     * @param direct true to allocate a direct buffer, outside of the heap.
+     * @return A ByteBuffer.
+     * @throws JSONException If the JSONTape is too large for a ByteBuffer.
+     */
+    public ByteBuffer toByteBuffer(boolean direct) throws JSONException {
+        long size = HEADER_SIZE + 8L * this.tapeLength + 2L * this.charsLength;
+        if (size > Integer.MAX_VALUE) {
+            throw new JSONException("JSONTape too large for a ByteBuffer: " +
+                    size + " bytes.");
+        }
+        ByteBuffer b = direct ? ByteBuffer.allocateDirect((int)size) :
+                ByteBuffer.allocate((int)size);
+        b.putInt(MAGIC);
+        b.putInt(this.tapeLength);
+        b.putInt(this.charsLength);
+        for (int i = 0; i < this.tapeLength; i += 1) {
+            b.putLong(entry(i));
+        }
+        for (int i = 0; i < this.charsLength; i += 1) {
+            b.putChar(charAt(i));
+        }
+        b.flip();
+        return b;
+    }
+
+
+    /**
+     * Write the JSONTape to a file in its binary form, to be read back
+     * with <code>map</code>.
+     * @param file A file. It is replaced if it exists.
+     * @throws JSONException If the file cannot be written.
+     */
+    public void store(File file) throws JSONException {
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                FileChannel channel = out.getChannel();
+                ByteBuffer b = toByteBuffer(false);
+                while (b.hasRemaining()) {
+                    channel.write(b);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    private long entry(int pos) {
+        return this.tape != null ? this.tape[pos] : this.tapeBuffer.get(pos);
+    }
+
+
+    private char charAt(int offset) {
+        return this.chars != null ? this.chars[offset] :
+                this.charBuffer.get(offset);
+    }
+
+
+    private long payload(int pos) {
+        return entry(pos) & PAYLOAD_MASK;
+    }
+
+
+    /**
+     * Get the position after a value, which is the position of the next
+     * sibling or of the closing entry of the enclosing container.
+     */
+    private int skip(int pos) {
+        switch (type(pos)) {
+        case '{':
+        case '[':
+            return (int)(payload(pos) & LINK_MASK);
+        case 'l':
+        case 'd':
+            return pos + 2;
+        default:
+            return pos + 1;
+        }
+    }
+
+
+    private int stringOffset(int pos) {
+        if (type(pos) != '"' && type(pos) != 'N') {
+            throw new JSONException("JSONTape[" + pos + "] is not a string.");
+        }
+        return (int)payload(pos);
+    }
+
+
+    /**
+     * Get the type of the value at a position.
+     * @param pos A position.
+     * @return One of <code>{ [ " l d N t f n</code>.
+     */
+    public char type(int pos) {
+        return (char)(entry(pos) >>> TYPE_SHIFT);
+    }
+
+
+    /**
+     * Get the position of the first member of an object or array. The
+     * first member of an object is a key, and its value is at the next
+     * position.
+     * @param pos The position of an object or array.
+     * @return The position of the first member, or -1 if it is empty.
+     */
+    public int first(int pos) {
+        char t = type(pos);
+        if (t != '{' && t != '[') {
+            throw new JSONException("JSONTape[" + pos +
+                    "] is not a JSONObject or JSONArray.");
+        }
+        t = type(pos + 1);
+        return t == '}' || t == ']' ? -1 : pos + 1;
+    }
+
+
+    /**
+     * Get the position of the next sibling of a value: the next element of
+     * an array, or the next key of an object when given the position of a
+     * value in an object.
+     * @param pos A position.
+     * @return The position of the next sibling, or -1 if there is none.
+     */
+    public int next(int pos) {
+        int p = skip(pos);
+        if (p >= this.tapeLength) {
+            return -1;
+        }
+        char t = type(p);
+        return t == '}' || t == ']' ? -1 : p;
+    }
+
+
+    /**
+     * Get the number of members of an object or elements of an array.
+     * @param pos The position of an object or array.
+     * @return The number of members.
+     */
+    public int length(int pos) {
+        char t = type(pos);
+        if (t != '{' && t != '[') {
+            throw new JSONException("JSONTape[" + pos +
+                    "] is not a JSONObject or JSONArray.");
+        }
+        long count = payload(pos) >>> COUNT_SHIFT;
+        if (count < COUNT_MAX) {
+            return (int)count;
+        }
+        int n = 0;
+        for (int p = first(pos); p >= 0; p = next(t == '{' ? p + 1 : p)) {
+            n += 1;
+        }
+        return n;
+    }
+
+
+    /**
+     * Find the value of a key in an object.
+     * @param pos The position of an object.
+     * @param key A key string.
+     * @return The position of the value, or -1 if the key is not found.
+     */
+    public int find(int pos, CharSequence key) {
+        if (type(pos) != '{') {
+            throw new JSONException("JSONTape[" + pos +
+                    "] is not a JSONObject.");
+        }
+        for (int p = first(pos); p >= 0; p = next(p + 1)) {
+            if (stringEquals(p, key)) {
+                return p + 1;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Find an element of an array.
+     * @param pos The position of an array.
+     * @param index The index of the element.
+     * @return The position of the element, or -1 if the index is out of
+     *  range.
+     */
+    public int index(int pos, int index) {
+        if (type(pos) != '[') {
+            throw new JSONException("JSONTape[" + pos +
+                    "] is not a JSONArray.");
+        }
+        if (index < 0) {
+            return -1;
+        }
+        int p = first(pos);
+        for (int i = 0; i < index && p >= 0; i += 1) {
+            p = next(p);
+        }
+        return p;
+    }
+
+
+    /**
+     * Get the boolean value at a position.
+     * @param pos A position.
+     * @return The truth.
+     * @throws JSONException If the value is not a boolean.
+     */
+    public boolean getBoolean(int pos) throws JSONException {
+        switch (type(pos)) {
+        case 't':
+            return true;
+        case 'f':
+            return false;
+        default:
+            throw new JSONException("JSONTape[" + pos + "] is not a Boolean.");
+        }
+    }
+
+
+    /**
+     * Get the numeric value at a position as a double.
+     * @param pos A position.
+     * @return The value.
+     * @throws JSONException If the value is not a number.
+     */
+    public double getDouble(int pos) throws JSONException {
+        switch (type(pos)) {
+        case 'l':
+            return entry(pos + 1);
+        case 'd':
+            return Double.longBitsToDouble(entry(pos + 1));
+        case 'N':
+            return Double.parseDouble(getString(pos));
+        default:
+            throw new JSONException("JSONTape[" + pos + "] is not a number.");
+        }
+    }
+
+
+    /**
+     * Get the numeric value at a position as a long.
+     * @param pos A position.
+     * @return The value.
+     * @throws JSONException If the value is not a number.
+     */
+    public long getLong(int pos) throws JSONException {
+        switch (type(pos)) {
+        case 'l':
+            return entry(pos + 1);
+        case 'd':
+            return (long)Double.longBitsToDouble(entry(pos + 1));
+        case 'N':
+            return new BigInteger(getString(pos)).longValue();
+        default:
+            throw new JSONException("JSONTape[" + pos + "] is not a number.");
+        }
+    }
+
+
+    /**
+     * Get the string value or key at a position. This makes a new String.
+     * @param pos A position.
+     * @return A String.
+     * @throws JSONException If the value is not a string.
+     */
+    public String getString(int pos) throws JSONException {
+        int offset = stringOffset(pos) + 2;
+        int len = stringLength(pos);
+        if (this.chars != null) {
+            return new String(this.chars, offset, len);
+        }
+        char[] c = new char[len];
+        for (int i = 0; i < len; i += 1) {
+            c[i] = this.charBuffer.get(offset + i);
+        }
+        return new String(c);
+    }
+
+
+    /**
+     * Determine if the value is null.
+     * @param pos A position.
+     * @return true if the value is <code>null</code>.
+     */
+    public boolean isNull(int pos) {
+        return type(pos) == 'n';
+    }
+
+
+    /**
+     * Get a character of the string value or key at a position.
+     * @param pos A position.
+     * @param index The index of the character.
+     * @return The character.
+     */
+    public char stringCharAt(int pos, int index) {
+        if (index < 0 || index >= stringLength(pos)) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return charAt(stringOffset(pos) + 2 + index);
+    }
+
+
+    /**
+     * Determine if the string value or key at a position holds the same
+     * characters as a CharSequence.
+     * @param pos A position.
+     * @param s The characters to compare with.
+     * @return true if they are the same.
+     */
+    public boolean stringEquals(int pos, CharSequence s) {
+        int offset = stringOffset(pos) + 2;
+        int len = stringLength(pos);
+        if (len != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i += 1) {
+            if (charAt(offset + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Get the length of the string value or key at a position.
+     * @param pos A position.
+     * @return The number of characters.
+     */
+    public int stringLength(int pos) {
+        int offset = stringOffset(pos);
+        return (charAt(offset) << 16) | charAt(offset + 1);
+    }
+
+
+    /**
+     * Convert the value at a position into a JSONObject, a JSONArray, a
+     * String, a Long, a Double, a BigInteger, a Boolean or JSONObject.NULL.
+     * @param pos A position.
+     * @return The value.
+     */
+    public Object toValue(int pos) {
+        switch (type(pos)) {
+        case '{':
+            JSONObject jo = new JSONObject();
+            for (int p = first(pos); p >= 0; p = next(p + 1)) {
+                jo.put(getString(p), toValue(p + 1));
+            }
+            return jo;
+        case '[':
+            JSONArray ja = new JSONArray();
+            for (int p = first(pos); p >= 0; p = next(p)) {
+                ja.put(toValue(p));
+            }
+            return ja;
+        case '"':
+            return getString(pos);
+        case 'l':
+            long l = entry(pos + 1);
+            return l == (int)l ? (Object)Integer.valueOf((int)l) :
+                    (Object)Long.valueOf(l);
+        case 'd':
+            return Double.valueOf(Double.longBitsToDouble(entry(pos + 1)));
+        case 'N':
+            return new BigInteger(getString(pos));
+        case 't':
+            return Boolean.TRUE;
+        case 'f':
+            return Boolean.FALSE;
+        default:
+            return JSONObject.NULL;
+        }
+    }
+
+
+    /**
+     * Get a read-only view of the value at a position. Objects and arrays
+     * are returned as a JSONObject or JSONArray that decodes its members
+     * from this JSONTape when they are accessed, and that throws a
+     * JSONException when it is modified. Other values are converted as by
+     * <code>toValue</code>.
+     * @param pos A position.
+     * @return A value.
+     */
+    public Object view(int pos) {
+        switch (type(pos)) {
+        case '{':
+            return new JSONTapeObject(this, pos);
+        case '[':
+            return new JSONTapeArray(this, pos);
+        default:
+            return toValue(pos);
+        }
+    }
+
+
+    /**
+     * Make a JSON text of the whole JSONTape.
+     * @return a printable, displayable, portable, transmittable
+     *  representation of the document.
+     */
+    @Override
+    public String toString() {
+        return JSONObject.valueToString(toValue(0));
+    }
+}
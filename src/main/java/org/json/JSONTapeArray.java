@@ -0,0 +1,120 @@
+package org.json;
+
+/**
+ * A read-only JSONArray that decodes its elements from a JSONTape when they
+ * are accessed. Nested objects and arrays are returned as further views.
+ * Views can be read by many threads at once.
+ */
+final class JSONTapeArray extends JSONArray {
+
+    private final JSONTape tape;
+
+    /**
+     * The position of the array on the tape.
+     */
+    private final int pos;
+
+    /**
+     * The hash code, or 0 if it has not been computed yet.
+     */
+    private int hash;
+
+    /**
+     * The index and the position of the last element found, as
+     * <code>index &lt;&lt; 32 | position</code>, or -1, so that reading the
+     * elements in order does not rescan the tape. Both are kept in one
+     * volatile long so that threads sharing the view always read a
+     * matching pair.
+     */
+    private volatile long cursor = -1;
+
+
+    JSONTapeArray(JSONTape tape, int pos) {
+        super((Void)null);
+        this.tape = tape;
+        this.pos = pos;
+    }
+
+
+    @Override
+    int cachedHashCode() {
+        return this.hash;
+    }
+
+
+    @Override
+    public void clear() {
+        throw new JSONException("JSONArray is read-only.");
+    }
+
+
+    /**
+     * The elements are decoded into Strings, so there is nothing to detach.
+     */
+    @Override
+    public JSONArray detach() {
+        return this;
+    }
+
+
+    /**
+     * The view is immutable, so its hash code is computed only once.
+     */
+    @Override
+    public int hashCode() {
+        int h = this.hash;
+        if (h == 0) {
+            h = super.hashCode();
+            this.hash = h;
+        }
+        return h;
+    }
+
+
+    @Override
+    public int length() {
+        return this.tape.length(this.pos);
+    }
+
+
+    @Override
+    public Object opt(int index) {
+        if (index < 0) {
+            return null;
+        }
+        long c = this.cursor;
+        int from = (int)(c >> 32);
+        int p;
+        if (c >= 0 && index >= from) {
+            p = (int)c;
+            for (int i = from; i < index && p >= 0; i += 1) {
+                p = this.tape.next(p);
+            }
+        } else {
+            p = this.tape.index(this.pos, index);
+        }
+        if (p < 0) {
+            return null;
+        }
+        this.cursor = (long)index << 32 | p;
+        return this.tape.view(p);
+    }
+
+
+    @Override
+    public JSONArray put(Object value) {
+        throw new JSONException("JSONArray is read-only.");
+    }
+
+
+    @Override
+    public JSONArray put(int index, Object value) throws JSONException {
+        throw new JSONException("JSONArray is read-only.");
+    }
+
+
+    @Override
+    public Object remove(int index) {
+        throw new JSONException("JSONArray is read-only.");
+    }
+}
@@ -0,0 +1,126 @@
+package org.json;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only JSONObject that decodes its members from a JSONTape when they
+ * are accessed. Nested objects and arrays are returned as further views.
+ */
+final class JSONTapeObject extends JSONObject {
+
+    private final JSONTape tape;
+
+    /**
+     * The position of the object on the tape.
+     */
+    private final int pos;
+
+    /**
+     * The hash code, or 0 if it has not been computed yet.
+     */
+    private int hash;
+
+
+    JSONTapeObject(JSONTape tape, int pos) {
+        super((Void)null);
+        this.tape = tape;
+        this.pos = pos;
+    }
+
+
+    @Override
+    int cachedHashCode() {
+        return this.hash;
+    }
+
+
+    @Override
+    public void clear() {
+        throw new JSONException("JSONObject is read-only.");
+    }
+
+
+    /**
+     * The members are decoded into Strings, so there is nothing to detach.
+     */
+    @Override
+    public JSONObject detach() {
+        return this;
+    }
+
+
+    @Override
+    public boolean has(String key) {
+        return key != null && this.tape.find(this.pos, key) >= 0;
+    }
+
+
+    @Override
+    public Iterator<String> keys() {
+        return new Iterator<String>() {
+            private int next = JSONTapeObject.this.tape.first(
+                    JSONTapeObject.this.pos);
+
+            public boolean hasNext() {
+                return this.next >= 0;
+            }
+
+            public String next() {
+                if (this.next < 0) {
+                    throw new NoSuchElementException();
+                }
+                JSONTape t = JSONTapeObject.this.tape;
+                String key = t.getString(this.next);
+                this.next = t.next(this.next + 1);
+                return key;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+
+    /**
+     * The view is immutable, so its hash code is computed only once.
+     */
+    @Override
+    public int hashCode() {
+        int h = this.hash;
+        if (h == 0) {
+            h = super.hashCode();
+            this.hash = h;
+        }
+        return h;
+    }
+
+
+    @Override
+    public int length() {
+        return this.tape.length(this.pos);
+    }
+
+
+    @Override
+    public Object opt(String key) {
+        if (key == null) {
+            return null;
+        }
+        int p = this.tape.find(this.pos, key);
+        return p < 0 ? null : this.tape.view(p);
+    }
+
+
+    @Override
+    public JSONObject put(String key, Object value) throws JSONException {
+        throw new JSONException("JSONObject is read-only.");
+    }
+
+
+    @Override
+    public Object remove(String key) {
+        throw new JSONException("JSONObject is read-only.");
+    }
+}
@@ -0,0 +1,310 @@
+package org.json;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A JSONTextCache keeps the compact JSON text of a JSONObject or JSONArray
+ * after it has been written, so that it can be copied instead of written
+ * again while the node does not change. It is made by
+ * <code>cacheText</code>, which turns caching on for a whole tree.
+ * <p>
+ * Each cache knows the nodes that hold its node. A change to a node drops
+ * its text and the text of every node above it, so writing the tree again
+ * only walks the changed paths and copies the text of everything else.
+ * The links to the holding nodes are weak, so a shared node that is put
+ * into many short-lived cached nodes does not keep them reachable.
+ * <p>
+ * Only plain JSONObjects and JSONArrays take part. The text of a node is
+ * only kept if all of its values are immutable: strings, numbers, booleans,
+ * <code>NULL</code>, JSONFragments and nodes whose text is kept. A node that
+ * holds a subclass, a Map, a bean or another JSONString is written again
+ * every time.
+ */
+final class JSONTextCache {
+
+    /**
+     * The node that holds this node, if it is held by exactly one.
+     */
+    private WeakReference<Object> holder;
+
+    /**
+     * The nodes that hold this node, once it has been held by more than
+     * one, or null. A node held twice is listed twice.
+     */
+    private ArrayList<WeakReference<Object>> holders;
+
+    /**
+     * The size of holders at which the links to collected nodes are
+     * removed from it.
+     */
+    private int prune;
+
+    /**
+     * The compact text, or null if the node has changed since it was last
+     * written.
+     */
+    private String text;
+
+
+    /**
+     * Note that a node is held by another node, turning caching on for it
+     * first.
+     */
+    static void attach(Object value, Object holder) {
+        JSONTextCache c = enable(value);
+        if (c == null) {
+            return;
+        }
+        WeakReference<Object> ref = new WeakReference<Object>(holder);
+        if (c.holders != null) {
+            if (c.holders.size() >= c.prune) {
+                c.prune();
+            }
+            c.holders.add(ref);
+        } else if (c.holder == null || c.holder.get() == null) {
+            c.holder = ref;
+        } else {
+            c.holders = new ArrayList<WeakReference<Object>>(2);
+            c.holders.add(c.holder);
+            c.holders.add(ref);
+            c.holder = null;
+            c.prune = 8;
+        }
+    }
+
+
+    /**
+     * Note that a node has been replaced in or removed from a node.
+     * @param holder The node that holds the values.
+     * @param old The value that was removed, or null.
+     * @param value The value that was put, or null.
+     */
+    void changed(Object holder, Object old, Object value) {
+        if (old != value) {
+            if (old != null) {
+                detach(old, holder);
+            }
+            if (value != null) {
+                attach(value, holder);
+            }
+        }
+        invalidate();
+    }
+
+
+    /**
+     * Note that all of the values of a node are about to be removed.
+     * @param holder The node.
+     */
+    void cleared(JSONObject holder) {
+        Iterator<Object> i = holder.map.values().iterator();
+        while (i.hasNext()) {
+            detach(i.next(), holder);
+        }
+        invalidate();
+    }
+
+
+    /**
+     * Note that all of the values of a node are about to be removed.
+     * @param holder The node.
+     */
+    void cleared(JSONArray holder) {
+        int len = holder.length();
+        for (int i = 0; i < len; i += 1) {
+            detach(holder.opt(i), holder);
+        }
+        invalidate();
+    }
+
+
+    /**
+     * Note that a node is no longer held by another node.
+     */
+    private static void detach(Object value, Object holder) {
+        JSONTextCache c = of(value);
+        if (c == null) {
+            return;
+        }
+        if (c.holder != null && c.holder.get() == holder) {
+            c.holder = null;
+        } else if (c.holders != null) {
+            for (int i = 0; i < c.holders.size(); i += 1) {
+                if (c.holders.get(i).get() == holder) {
+                    c.holders.remove(i);
+                    break;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Turn caching on for a plain JSONObject or JSONArray and for the nodes
+     * within it.
+     * @param value A value.
+     * @return The cache of the value, or null if it cannot have one.
+     */
+    static JSONTextCache enable(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.getClass() == JSONObject.class) {
+            JSONObject jo = (JSONObject)value;
+            if (jo.cache == null) {
+                jo.cache = new JSONTextCache();
+                Iterator<Object> i = jo.map.values().iterator();
+                while (i.hasNext()) {
+                    attach(i.next(), jo);
+                }
+            }
+            return jo.cache;
+        }
+        if (value.getClass() == JSONArray.class) {
+            JSONArray ja = (JSONArray)value;
+            if (ja.cache == null) {
+                ja.cache = new JSONTextCache();
+                int len = ja.length();
+                for (int i = 0; i < len; i += 1) {
+                    attach(ja.opt(i), ja);
+                }
+            }
+            return ja.cache;
+        }
+        return null;
+    }
+
+
+    /**
+     * Get the text of a node, writing it if it is not kept.
+     * @param node The JSONObject or JSONArray that has this cache.
+     * @return The compact text.
+     */
+    String get(Object node) throws IOException {
+        String t = this.text;
+        if (t == null) {
+            StringBuilder sb = new StringBuilder();
+            JSONSerializer s = new JSONSerializer(sb);
+            if (node instanceof JSONObject) {
+                s.members(((JSONObject)node).map);
+            } else {
+                s.elements((JSONArray)node);
+            }
+            s.flush();
+            t = sb.toString();
+            if (isStable(node)) {
+                this.text = t;
+            }
+        }
+        return t;
+    }
+
+
+    /**
+     * Drop the text of this node and of the nodes that hold it. A node
+     * without text stops the walk, since the nodes above it cannot have
+     * kept theirs.
+     */
+    private void invalidate() {
+        if (this.text == null) {
+            return;
+        }
+        this.text = null;
+        if (this.holders != null) {
+            for (int i = 0; i < this.holders.size(); i += 1) {
+                invalidate(this.holders.get(i));
+            }
+        } else {
+            invalidate(this.holder);
+        }
+    }
+
+
+    /**
+     * Drop the text of a holding node, if it has not been collected.
+     */
+    private static void invalidate(WeakReference<Object> ref) {
+        Object holder = ref != null ? ref.get() : null;
+        if (holder != null) {
+            of(holder).invalidate();
+        }
+    }
+
+
+    /**
+     * Determine if the text of a node can be kept.
+     */
+    private static boolean isStable(Object node) {
+        if (node instanceof JSONObject) {
+            Iterator<Object> i = ((JSONObject)node).map.values().iterator();
+            while (i.hasNext()) {
+                if (!isStableValue(i.next())) {
+                    return false;
+                }
+            }
+        } else {
+            JSONArray ja = (JSONArray)node;
+            int len = ja.length();
+            for (int i = 0; i < len; i += 1) {
+                if (!isStableValue(ja.opt(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Remove the links to holding nodes that have been collected. The next
+     * pass is due when the list has doubled, so adding a link takes
+     * constant time on average.
+     */
+    private void prune() {
+        ArrayList<WeakReference<Object>> live =
+                new ArrayList<WeakReference<Object>>();
+        for (int i = 0; i < this.holders.size(); i += 1) {
+            WeakReference<Object> ref = this.holders.get(i);
+            if (ref.get() != null) {
+                live.add(ref);
+            }
+        }
+        this.holders = live;
+        this.prune = Math.max(8, 2 * live.size());
+    }
+
+
+    private static boolean isStableValue(Object v) {
+        if (v == null || v == JSONObject.NULL || v instanceof String ||
+                v instanceof Boolean || v instanceof Integer ||
+                v instanceof Long || v instanceof Double ||
+                v instanceof JSONNumber || v instanceof JSONStringView ||
+                v instanceof JSONFragment ||
+                v instanceof BigDecimal || v instanceof BigInteger ||
+                v instanceof Float || v instanceof Short ||
+                v instanceof Byte) {
+            return true;
+        }
+        JSONTextCache c = of(v);
+        return c != null && c.text != null;
+    }
+
+
+    /**
+     * Get the cache of a value, or null.
+     */
+    private static JSONTextCache of(Object value) {
+        if (value instanceof JSONObject) {
+            return ((JSONObject)value).cache;
+        }
+        if (value instanceof JSONArray) {
+            return ((JSONArray)value).cache;
+        }
+        return null;
+    }
+}
@@ -1,9 +1,15 @@
 package org.json;
 
 import java.io.BufferedReader;
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -39,11 +45,30 @@ SOFTWARE.
 public class JSONTokener {
 
     private int 	character;
+    private JSONDeduplicator deduplicator;
     private boolean eof;
+    private boolean exactNumbers;
+    private Set<String> fragmentKeys;
     private int 	index;
+    private boolean internKeys;
+    private boolean lazyNumbers;
     private int 	line;
+    private long    size;
+    private long    sizeLimit;
     private char 	previous;
     private Reader 	reader;
+    private CharSequence source;
+    private ArrayList<JSONArray> spareArrays;
+
+    /**
+     * The containers that have been kept as spares since the last
+     * <code>recycle</code>, so that a container held twice is only reused
+     * once.
+     */
+    private IdentityHashMap<Object, Object> spared;
+    private ArrayList<JSONObject> spareObjects;
+    private JSONStringPool stringPool;
+    private boolean stringViews;
     private boolean usePrevious;
 
 
@@ -71,6 +96,20 @@ public class JSONTokener {
      */
     public JSONTokener(String s) {
         this(new StringReader(s));
+        this.source = s;
+    }
+
+
+    /**
+     * Construct a JSONTokener from an array of characters. The array must
+     * not be changed while the JSONTokener or any string views made from it
+     * are in use.
+     *
+     * @param chars     The source characters.
+     */
+    public JSONTokener(char[] chars) {
+        this(new CharArrayReader(chars));
+        this.source = CharBuffer.wrap(chars);
     }
 
 
@@ -254,6 +293,167 @@ public class JSONTokener {
         }
     }
 
+    /**
+     * Parse a JSONArray, reusing a spare one if there is one.
+     */
+    private JSONArray nextArray() throws JSONException {
+        if (this.spareArrays == null || this.spareArrays.isEmpty()) {
+            return new JSONArray(this);
+        }
+        JSONArray ja = this.spareArrays.remove(this.spareArrays.size() - 1);
+        release(ja);
+        ja.parse(this);
+        return ja;
+    }
+
+
+    /**
+     * Parse a JSONObject, reusing a spare one if there is one.
+     */
+    private JSONObject nextObject() throws JSONException {
+        if (this.spareObjects == null || this.spareObjects.isEmpty()) {
+            return new JSONObject(this);
+        }
+        JSONObject jo = this.spareObjects.remove(this.spareObjects.size() - 1);
+        release(jo);
+        jo.parse(this);
+        return jo;
+    }
+
+
+    /**
+     * Get the next value as a JSONFragment holding its text, without
+     * building it. The text is checked against the strict JSON syntax, so
+     * that it can be copied into JSON output as it is: strings must be in
+     * double quotes, keys must be strings, and the non-standard forms that
+     * <code>nextValue</code> accepts are not allowed. Whitespace between
+     * tokens is left out.
+     * @throws JSONException If the value is not strict JSON.
+     *
+     * @return A JSONFragment.
+     */
+    public JSONFragment nextFragment() throws JSONException {
+        StringBuilder sb = new StringBuilder();
+        nextFragment(sb);
+        char[] chars = new char[sb.length()];
+        sb.getChars(0, chars.length, chars, 0);
+        return (JSONFragment)finish(new JSONFragment(chars));
+    }
+
+
+    /**
+     * Check the next value and append its text to a StringBuilder.
+     */
+    private void nextFragment(StringBuilder sb) throws JSONException {
+        char c = nextClean();
+        switch (c) {
+        case '"':
+            nextFragmentString(sb);
+            return;
+        case '{':
+            sb.append(c);
+            c = nextClean();
+            if (c == '}') {
+                sb.append(c);
+                return;
+            }
+            for (;;) {
+                if (c != '"') {
+                    throw syntaxError("Expected a string key");
+                }
+                nextFragmentString(sb);
+                if (nextClean() != ':') {
+                    throw syntaxError("Expected a ':' after a key");
+                }
+                sb.append(':');
+                nextFragment(sb);
+                c = nextClean();
+                sb.append(c);
+                if (c == '}') {
+                    return;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected a ',' or '}'");
+                }
+                c = nextClean();
+            }
+        case '[':
+            sb.append(c);
+            if (nextClean() == ']') {
+                sb.append(']');
+                return;
+            }
+            back();
+            for (;;) {
+                nextFragment(sb);
+                c = nextClean();
+                sb.append(c);
+                if (c == ']') {
+                    return;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected a ',' or ']'");
+                }
+            }
+        }
+
+        /*
+         * Anything else must be true, false, null or a number.
+         */
+
+        int start = sb.length();
+        while (c > ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+            sb.append(c);
+            c = next();
+        }
+        back();
+        String s = sb.substring(start);
+        if (s.equals("")) {
+            throw syntaxError("Missing value");
+        }
+        if (!s.equals("true") && !s.equals("false") && !s.equals("null") &&
+                !JSONNumber.isNumber(s)) {
+            throw syntaxError("Bad value " + s);
+        }
+    }
+
+
+    /**
+     * Check a string in double quotes, after the open quote, and append its
+     * text to a StringBuilder as it is.
+     */
+    private void nextFragmentString(StringBuilder sb) throws JSONException {
+        sb.append('"');
+        for (;;) {
+            char c = next();
+            if (c < ' ') {
+                throw syntaxError("Unterminated string");
+            }
+            sb.append(c);
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = next();
+                if (c == 'u') {
+                    sb.append(c);
+                    for (int i = 0; i < 4; i += 1) {
+                        c = next();
+                        if (dehexchar(c) < 0) {
+                            throw syntaxError("Illegal escape.");
+                        }
+                        sb.append(c);
+                    }
+                } else if (c != 0 && "\"\\/bfnrt".indexOf(c) >= 0) {
+                    sb.append(c);
+                } else {
+                    throw syntaxError("Illegal escape.");
+                }
+            }
+        }
+    }
+
+
     /**
      * Return the characters up to the next close quote character.
      * Backslash processing is done. The formal JSON format does not
@@ -266,8 +466,17 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
+        return nextString(quote, new StringBuilder());
+    }
+
+
+    /**
+     * Return the characters up to the next close quote character, appended
+     * to the characters already in a StringBuilder.
+     */
+    private String nextString(char quote, StringBuilder sb)
+            throws JSONException {
         char c;
-        StringBuilder sb = new StringBuilder();
         for (;;) {
             c = next();
             switch (c) {
@@ -308,7 +517,8 @@ public class JSONTokener {
                 break;
             default:
                 if (c == quote) {
-                    return sb.toString();
+                    return this.stringPool == null ?
+                            sb.toString() : this.stringPool.intern(sb);
                 }
                 sb.append(c);
             }
@@ -316,6 +526,37 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Return the characters up to the next close quote character as a
+     * JSONStringView over the source text. If the string contains an escape
+     * sequence, or if the JSONTokener was made from a Reader, then the
+     * characters are copied into a String instead.
+     * @param quote The quoting character, either
+     *      <code>"</code>&nbsp;<small>(double quote)</small> or
+     *      <code>'</code>&nbsp;<small>(single quote)</small>.
+     * @return      A JSONStringView or a String.
+     * @throws JSONException Unterminated string.
+     */
+    public CharSequence nextStringView(char quote) throws JSONException {
+        if (this.source == null) {
+            return nextString(quote);
+        }
+        int start = this.index;
+        for (;;) {
+            char c = next();
+            if (c == quote) {
+                return new JSONStringView(this.source, start, this.index - 1);
+            }
+            if (c == '\\' || c == 0 || c == '\n' || c == '\r') {
+                back();
+                StringBuilder sb = new StringBuilder();
+                sb.append(this.source, start, this.index);
+                return nextString(quote, sb);
+            }
+        }
+    }
+
+
     /**
      * Get the text up but not including the specified character or the
      * end of line, whichever comes first.
@@ -374,14 +615,15 @@ public class JSONTokener {
         switch (c) {
             case '"':
             case '\'':
-                return nextString(c);
+                return finish(this.stringViews ?
+                        nextStringView(c) : nextString(c));
             case '{':
                 back();
-                return new JSONObject(this);
+                return finish(nextObject());
             case '[':
             case '(':
                 back();
-                return new JSONArray(this);
+                return finish(nextArray());
         }
 
         /*
@@ -404,7 +646,301 @@ public class JSONTokener {
         if (s.equals("")) {
             throw syntaxError("Missing value");
         }
-        return JSONObject.stringToValue(s);
+        if (this.lazyNumbers) {
+            JSONNumber n = JSONNumber.tryParse(s);
+            if (n != null) {
+                return finish(n);
+            }
+        }
+        if (this.exactNumbers && JSONNumber.isNumber(s)) {
+            return finish(JSONObject.stringToExactNumber(s));
+        }
+        return finish(JSONObject.stringToValue(s));
+    }
+
+
+    /**
+     * Get the JSONDeduplicator that shares the parsed values.
+     * @return The JSONDeduplicator, or null if values are not shared.
+     */
+    public JSONDeduplicator getDeduplicator() {
+        return this.deduplicator;
+    }
+
+
+    /**
+     * Share structurally equal values while parsing. Each value returned
+     * by <code>nextValue</code>, including the keys and values inside
+     * JSONObjects and JSONArrays, is replaced by its shared instance in the
+     * JSONDeduplicator. The outermost JSONObject or JSONArray being
+     * constructed is not itself shared. The result must be treated as
+     * read-only.
+     * @param deduplicator A JSONDeduplicator, or null to stop sharing.
+     */
+    public void setDeduplicator(JSONDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+
+    /**
+     * Account for the size of a parsed value and share it if a
+     * JSONDeduplicator is set.
+     */
+    private Object finish(Object value) throws JSONException {
+        if (this.sizeLimit > 0) {
+            this.size += JSONFootprint.shallowSize(value);
+            if (this.size > this.sizeLimit) {
+                throw syntaxError("Estimated size exceeds the limit of " +
+                        this.sizeLimit + " bytes");
+            }
+        }
+        return this.deduplicator == null ?
+                value : this.deduplicator.canonicalize(value);
+    }
+
+
+    /**
+     * Determine if numbers are converted without losing precision.
+     * @return true if exact numbers are enabled.
+     */
+    public boolean isExactNumbers() {
+        return this.exactNumbers;
+    }
+
+
+    /**
+     * Convert numbers without losing precision. When enabled, integers
+     * that fit in a long become an Integer or a Long as usual, and larger
+     * ones a BigInteger instead of a Double. Numbers with a fraction or an
+     * exponent become a BigDecimal that keeps the digits and scale as
+     * written, so that 2.50 is written back as 2.50. Numbers in non-standard
+     * forms are converted as usual. Lazy numbers take precedence.
+     * @param exact true to convert numbers exactly.
+     */
+    public void setExactNumbers(boolean exact) {
+        this.exactNumbers = exact;
+    }
+
+
+    /**
+     * Get the keys whose values are kept as JSONFragments.
+     * @return The keys, or null if no values are kept as fragments.
+     */
+    public Set<String> getFragmentKeys() {
+        return this.fragmentKeys;
+    }
+
+
+    /**
+     * Keep the values of members with some keys as JSONFragments while
+     * parsing a JSONObject, at any depth, instead of building them. Their
+     * text is checked as <code>nextFragment</code> does, and is written back
+     * as it is. Use this for parts of a document that are only passed on.
+     * @param keys The keys, or null to build all values.
+     */
+    public void setFragmentKeys(Set<String> keys) {
+        this.fragmentKeys = keys;
+    }
+
+
+    /**
+     * Determine if the value of a member is kept as a JSONFragment.
+     */
+    boolean isFragmentKey(String key) {
+        return this.fragmentKeys != null && this.fragmentKeys.contains(key);
+    }
+
+
+    /**
+     * Determine if parsed keys are replaced by the names of JSONKeys.
+     * @return true if key interning is enabled.
+     */
+    public boolean isInternKeys() {
+        return this.internKeys;
+    }
+
+
+    /**
+     * Replace each parsed key for which a JSONKey exists by the name of the
+     * JSONKey, so that looking the member up with the JSONKey finds it by
+     * identity. Keys without a JSONKey are left as they are.
+     * @param intern true to intern keys.
+     */
+    public void setInternKeys(boolean intern) {
+        this.internKeys = intern;
+    }
+
+
+    /**
+     * Determine if numbers are kept as JSONNumbers.
+     * @return true if lazy numbers are enabled.
+     */
+    public boolean isLazyNumbers() {
+        return this.lazyNumbers;
+    }
+
+
+    /**
+     * Keep numbers in their original text form. When enabled,
+     * <code>nextValue</code> returns a JSONNumber for each number that
+     * follows the strict JSON syntax. Its digits are only converted when a
+     * value is asked for, and they are written back unchanged. Numbers in
+     * non-standard forms such as <code>0x-</code> are converted as usual.
+     * @param lazy true to keep numbers as JSONNumbers.
+     */
+    public void setLazyNumbers(boolean lazy) {
+        this.lazyNumbers = lazy;
+    }
+
+
+    /**
+     * Get the JSONStringPool that shares parsed strings.
+     * @return The JSONStringPool, or null if there is none.
+     */
+    public JSONStringPool getStringPool() {
+        return this.stringPool;
+    }
+
+
+    /**
+     * Share the short strings read by <code>nextString</code>, both keys
+     * and values, through a JSONStringPool. The pool can be shared by many
+     * tokeners on many threads. Strings kept as string views are not
+     * pooled.
+     * @param pool A JSONStringPool, or null to stop pooling.
+     */
+    public void setStringPool(JSONStringPool pool) {
+        this.stringPool = pool;
+    }
+
+
+    /**
+     * Determine if string values are kept as views over the source text.
+     * @return true if string views are enabled.
+     */
+    public boolean isStringViews() {
+        return this.stringViews;
+    }
+
+
+    /**
+     * Keep string values as JSONStringViews over the source text instead of
+     * copying them into Strings. This only has an effect if the JSONTokener
+     * was made from a String or an array of characters. The views refer to
+     * the source until they are detached, so use <code>detach</code> on the
+     * resulting JSONObject or JSONArray if it is kept longer than the source.
+     * Keys are always Strings.
+     * @param views true to keep string values as views.
+     */
+    public void setStringViews(boolean views) {
+        this.stringViews = views;
+    }
+
+
+    /**
+     * Clear a JSONArray that is about to be refilled, keeping its nested
+     * JSONObjects and JSONArrays as spares for the values to come. Nothing
+     * is kept when a JSONDeduplicator is in use, because its containers may
+     * be shared. Each container is kept at most once, even if the old tree
+     * holds it more than once.
+     */
+    void recycle(JSONArray ja) {
+        this.spared = null;
+        release(ja);
+    }
+
+
+    /**
+     * Clear a JSONObject that is about to be refilled, as
+     * <code>recycle(JSONArray)</code> does.
+     */
+    void recycle(JSONObject jo) {
+        this.spared = null;
+        release(jo);
+    }
+
+
+    /**
+     * Clear a JSONArray, keeping its nested containers as spares.
+     */
+    private void release(JSONArray ja) {
+        if (this.deduplicator == null) {
+            int len = ja.length();
+            for (int i = 0; i < len; i += 1) {
+                spare(ja.opt(i));
+            }
+        }
+        ja.clear();
+    }
+
+
+    /**
+     * Clear a JSONObject, keeping its nested containers as spares.
+     */
+    private void release(JSONObject jo) {
+        if (this.deduplicator == null) {
+            Iterator<String> keys = jo.keys();
+            while (keys.hasNext()) {
+                spare(jo.opt(keys.next()));
+            }
+        }
+        jo.clear();
+    }
+
+
+    private void spare(Object value) {
+        if (value == null || (value.getClass() != JSONObject.class &&
+                value.getClass() != JSONArray.class)) {
+            return;
+        }
+        if (this.spared == null) {
+            this.spared = new IdentityHashMap<Object, Object>();
+        }
+        if (this.spared.put(value, value) != null) {
+            return;
+        }
+        if (value.getClass() == JSONObject.class) {
+            if (this.spareObjects == null) {
+                this.spareObjects = new ArrayList<JSONObject>();
+            }
+            this.spareObjects.add((JSONObject)value);
+        } else if (value.getClass() == JSONArray.class) {
+            if (this.spareArrays == null) {
+                this.spareArrays = new ArrayList<JSONArray>();
+            }
+            this.spareArrays.add((JSONArray)value);
+        }
+    }
+
+
+    /**
+     * Get the estimated number of bytes of the values parsed so far. It is
+     * only kept while a size limit is set.
+     * @return The estimated size.
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+
+    /**
+     * Get the size limit.
+     * @return The limit in bytes, or 0 if there is none.
+     */
+    public long getSizeLimit() {
+        return this.sizeLimit;
+    }
+
+
+    /**
+     * Limit the estimated memory taken by the parsed values. The size of
+     * each value is estimated as in JSONFootprint as soon as it is parsed,
+     * and parsing stops with a JSONException once the total exceeds the
+     * limit. This protects against texts that would take too much memory.
+     * @param limit The limit in bytes, or 0 for no limit.
+     */
+    public void setSizeLimit(long limit) {
+        this.sizeLimit = limit;
     }
 
 
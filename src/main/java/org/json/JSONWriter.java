@@ -2,6 +2,9 @@ package org.json;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 
 /*
 Copyright (c) 2006 JSON.org
@@ -50,7 +53,14 @@ SOFTWARE.
  * <p>
  * The first method called must be <code>array</code> or <code>object</code>.
  * There are no methods for adding commas or colons. JSONWriter adds them for
- * you. Objects and arrays can be nested up to 20 levels deep.
+ * you. Objects and arrays can be nested up to 20 levels deep, unless
+ * <code>setMaxDepth</code> allows more.
+ * <p>
+ * The text is collected in a buffer and handed to the writer in large
+ * blocks, and when the outermost array or object is ended. Call
+ * <code>flush</code> to hand it over earlier. By default, each key is checked
+ * against the other keys of its object. Writers that produce large texts
+ * from trusted code can turn this off with <code>setCheckKeys</code>.
  * <p>
  * This can sometimes be easier than using a JSONObject to build a string.
  * @author JSON.org
@@ -59,12 +69,33 @@ SOFTWARE.
 public class JSONWriter {
     private static final int maxdepth = 20;
 
+    /**
+     * Whether keys are checked for duplicates.
+     */
+    private boolean checkKeys = true;
+
     /**
      * The comma flag determines if a comma should be output before the next
      * value.
      */
     private boolean comma;
 
+    /**
+     * The keys of each open object by depth, if keys are checked. The sets
+     * are reused by the objects that follow.
+     */
+    private ArrayList<HashSet<String>> keys;
+
+    /**
+     * The position in the serializer before the value being appended.
+     */
+    private long mark;
+
+    /**
+     * The deepest nesting allowed.
+     */
+    private int maxDepth = maxdepth;
+
     /**
      * The current mode. Values:
      * 'a' (array),
@@ -76,9 +107,16 @@ public class JSONWriter {
     protected char mode;
 
     /**
-     * The object/array stack.
+     * The serializer that buffers the text, made on first use, and the
+     * writer that it writes to.
      */
-    private JSONObject stack[];
+    private JSONSerializer serializer;
+    private Writer serializerWriter;
+
+    /**
+     * The object/array stack, with 'k' for an object and 'a' for an array.
+     */
+    private char stack[];
 
     /**
      * The stack top index. A value of 0 indicates that the stack is empty.
@@ -96,7 +134,7 @@ public class JSONWriter {
     public JSONWriter(Writer w) {
         this.comma = false;
         this.mode = 'i';
-        this.stack = new JSONObject[maxdepth];
+        this.stack = new char[maxdepth];
         this.top = 0;
         this.writer = w;
     }
@@ -111,22 +149,13 @@ public class JSONWriter {
         if (s == null) {
             throw new JSONException("Null pointer");
         }
-        if (this.mode == 'o' || this.mode == 'a') {
-            try {
-                if (this.comma && this.mode == 'a') {
-                    this.writer.write(',');
-                }
-                this.writer.write(s);
-            } catch (IOException e) {
-                throw new JSONException(e);
-            }
-            if (this.mode == 'o') {
-                this.mode = 'k';
-            }
-            this.comma = true;
-            return this;
+        JSONSerializer ser = this.start();
+        try {
+            ser.write(s);
+        } catch (IOException e) {
+            throw new JSONException(e);
         }
-        throw new JSONException("Value out of sequence.");
+        return this.finish();
     }
 
     /**
@@ -140,7 +169,7 @@ public class JSONWriter {
      */
     public JSONWriter array() throws JSONException {
         if (this.mode == 'i' || this.mode == 'o' || this.mode == 'a') {
-            this.push(null);
+            this.push('a');
             this.append("[");
             this.comma = false;
             return this;
@@ -162,7 +191,11 @@ public class JSONWriter {
         }
         this.pop(m);
         try {
-            this.writer.write(c);
+            JSONSerializer ser = this.serializer();
+            ser.write(c);
+            if (this.mode == 'd') {
+                ser.flush();
+            }
         } catch (IOException e) {
             throw new JSONException(e);
         }
@@ -190,26 +223,73 @@ public class JSONWriter {
         return this.end('k', '}');
     }
 
+    /**
+     * Finish appending a value.
+     * @return this
+     */
+    private JSONWriter finish() {
+        if (this.mode == 'o') {
+            this.mode = 'k';
+        }
+        this.comma = true;
+        return this;
+    }
+
+    /**
+     * Hand the buffered text to the writer, and flush the writer.
+     * @return this
+     * @throws JSONException If the writer fails.
+     */
+    public JSONWriter flush() throws JSONException {
+        try {
+            this.serializer().flush();
+            this.writer.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    /**
+     * Get the deepest nesting of arrays and objects that is allowed.
+     * @return The depth.
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Determine if keys are checked for duplicates.
+     * @return true if they are.
+     */
+    public boolean isCheckKeys() {
+        return this.checkKeys;
+    }
+
     /**
      * Append a key. The key will be associated with the next value. In an
      * object, every value must be preceded by a key.
      * @param s A key string.
      * @return this
      * @throws JSONException If the key is out of place. For example, keys
-     *  do not belong in arrays or if the key is null.
+     *  do not belong in arrays or if the key is null. If keys are checked,
+     *  also if the object already has the key.
      */
     public JSONWriter key(String s) throws JSONException {
         if (s == null) {
             throw new JSONException("Null key.");
         }
         if (this.mode == 'k') {
+            if (this.checkKeys && !this.keySet().add(s)) {
+                throw new JSONException("Duplicate key \"" + s + "\"");
+            }
             try {
-                stack[top - 1].putOnce(s, Boolean.TRUE);
+                JSONSerializer ser = this.serializer();
                 if (this.comma) {
-                    this.writer.write(',');
+                    ser.write(',');
                 }
-                this.writer.write(JSONObject.quote(s));
-                this.writer.write(':');
+                ser.quote(s);
+                ser.write(':');
                 this.comma = false;
                 this.mode = 'o';
                 return this;
@@ -221,6 +301,22 @@ public class JSONWriter {
     }
 
 
+    /**
+     * Get the keys of the current object. The set is made here if keys were
+     * not checked when the object was begun.
+     * @return The set of keys.
+     */
+    private HashSet<String> keySet() {
+        if (this.keys == null) {
+            this.keys = new ArrayList<HashSet<String>>();
+        }
+        while (this.keys.size() < this.top) {
+            this.keys.add(new HashSet<String>());
+        }
+        return this.keys.get(this.top - 1);
+    }
+
+
     /**
      * Begin appending a new object. All keys and values until the balancing
      * <code>endObject</code> will be appended to this object. The
@@ -236,7 +332,7 @@ public class JSONWriter {
         }
         if (this.mode == 'o' || this.mode == 'a') {
             this.append("{");
-            this.push(new JSONObject());
+            this.push('k');
             this.comma = false;
             return this;
         }
@@ -254,28 +350,109 @@ public class JSONWriter {
         if (this.top <= 0) {
             throw new JSONException("Nesting error.");
         }
-        char m = this.stack[this.top - 1] == null ? 'a' : 'k';
-        if (m != c) {
+        if (this.stack[this.top - 1] != c) {
             throw new JSONException("Nesting error.");
         }
         this.top -= 1;
-        this.mode = this.top == 0 ? 'd' : this.stack[this.top - 1] == null ? 'a' : 'k';
+        this.mode = this.top == 0 ? 'd' : this.stack[this.top - 1];
     }
 
     /**
      * Push an array or object scope.
-     * @param c The scope to open.
+     * @param c The scope to open: 'a' for an array or 'k' for an object.
      * @throws JSONException If nesting is too deep.
      */
-    private void push(JSONObject jo) throws JSONException {
-        if (this.top >= maxdepth) {
+    private void push(char c) throws JSONException {
+        if (this.top >= this.maxDepth) {
             throw new JSONException("Nesting too deep.");
         }
-        this.stack[this.top] = jo;
-        this.mode = jo == null ? 'a' : 'k';
+        if (this.top == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.top * 2);
+        }
+        if (c == 'k' && this.keys != null && this.keys.size() > this.top) {
+            this.keys.get(this.top).clear();
+        }
+        this.stack[this.top] = c;
+        this.mode = c;
         this.top += 1;
     }
 
+    /**
+     * Discard the text that is still buffered and start a new JSON text.
+     */
+    void reset() {
+        this.comma = false;
+        this.mode = 'i';
+        this.top = 0;
+        if (this.serializer != null) {
+            this.serializer.clear();
+        }
+    }
+
+    /**
+     * Check keys and limit the depth as a new JSONWriter does.
+     */
+    void restoreDefaults() {
+        this.checkKeys = true;
+        this.maxDepth = maxdepth;
+    }
+
+    /**
+     * Get the serializer for the writer. If the writer has been replaced,
+     * the text buffered for the old one is handed to it first.
+     */
+    private JSONSerializer serializer() throws IOException {
+        if (this.serializerWriter != this.writer) {
+            if (this.serializer != null) {
+                this.serializer.flush();
+            }
+            this.serializer = new JSONSerializer(this.writer);
+            this.serializerWriter = this.writer;
+        }
+        return this.serializer;
+    }
+
+    /**
+     * Check keys for duplicates or not. This should be set before the first
+     * call to <code>object</code>. If checks are turned on inside an object,
+     * the keys appended to it before are not checked.
+     * @param checkKeys true to throw a JSONException when a key is repeated
+     *  in an object, which is the default, or false to skip the check.
+     */
+    public void setCheckKeys(boolean checkKeys) {
+        this.checkKeys = checkKeys;
+    }
+
+    /**
+     * Set the deepest nesting of arrays and objects that is allowed. The
+     * default is 20.
+     * @param maxDepth The depth.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Start appending a value, writing the comma before it if needed.
+     * @return The serializer.
+     * @throws JSONException If the value is out of sequence.
+     */
+    private JSONSerializer start() throws JSONException {
+        if (this.mode == 'o' || this.mode == 'a') {
+            try {
+                JSONSerializer ser = this.serializer();
+                this.mark = ser.position();
+                if (this.comma && this.mode == 'a') {
+                    ser.write(',');
+                }
+                return ser;
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+        }
+        throw new JSONException("Value out of sequence.");
+    }
+
 
     /**
      * Append either the value <code>true</code> or the value
@@ -288,6 +465,26 @@ public class JSONWriter {
         return this.append(b ? "true" : "false");
     }
 
+    /**
+     * Append part of a char array as a string value. The chars are escaped
+     * straight into the output.
+     * @param chars A char array.
+     * @param offset The index of the first char.
+     * @param length The number of chars.
+     * @return this
+     * @throws JSONException If the value is out of sequence.
+     */
+    public JSONWriter value(char[] chars, int offset, int length)
+            throws JSONException {
+        JSONSerializer ser = this.start();
+        try {
+            ser.quote(chars, offset, length);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.finish();
+    }
+
     /**
      * Append a double value.
      * @param d A double.
@@ -295,7 +492,26 @@ public class JSONWriter {
      * @throws JSONException If the number is not finite.
      */
     public JSONWriter value(double d) throws JSONException {
-        return this.value(Double.valueOf(d));
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+        JSONSerializer ser = this.start();
+        try {
+            ser.number(d);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.finish();
+    }
+
+    /**
+     * Append an int value.
+     * @param i An int.
+     * @return this
+     * @throws JSONException
+     */
+    public JSONWriter value(int i) throws JSONException {
+        return this.value((long)i);
     }
 
     /**
@@ -305,19 +521,65 @@ public class JSONWriter {
      * @throws JSONException
      */
     public JSONWriter value(long l) throws JSONException {
-        return this.append(Long.toString(l));
+        JSONSerializer ser = this.start();
+        try {
+            ser.number(l);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.finish();
     }
 
 
     /**
      * Append an object value.
+     * <p>
+     * If the value cannot be written, for example because it contains a
+     * number that is not finite, the text of it is dropped and the exception
+     * is thrown. A large value may have been handed to the writer in part
+     * before the error was found. That text cannot be taken back, so the
+     * JSONWriter then throws a JSONException and takes no more values.
      * @param o The object to append. It can be null, or a Boolean, Number,
      *   String, JSONObject, or JSONArray, or an object with a toJSONString()
      *   method.
      * @return this
-     * @throws JSONException If the value is out of sequence.
+     * @throws JSONException If the value is out of sequence, or if it
+     *  cannot be written.
      */
     public JSONWriter value(Object o) throws JSONException {
-        return this.append(JSONObject.valueToString(o));
+        JSONSerializer ser = this.start();
+        try {
+            ser.value(o);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        } catch (RuntimeException e) {
+            if (!ser.rewind(this.mark)) {
+                this.mode = 'd';
+                throw new JSONException(
+                        "Part of the value was already written.", e);
+            }
+            throw e;
+        }
+        return this.finish();
+    }
+
+    /**
+     * Append a string value. The string is escaped straight into the
+     * output.
+     * @param s A string, or null for the value <code>null</code>.
+     * @return this
+     * @throws JSONException If the value is out of sequence.
+     */
+    public JSONWriter value(String s) throws JSONException {
+        if (s == null) {
+            return this.append("null");
+        }
+        JSONSerializer ser = this.start();
+        try {
+            ser.quote(s);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.finish();
     }
 }
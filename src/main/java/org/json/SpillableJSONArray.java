@@ -0,0 +1,349 @@
+package org.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * A SpillableJSONArray is an append-only JSONArray for more values than fit
+ * in memory. Only the most recently added values are kept in memory. When
+ * their number reaches the window size, they are serialized to a temporary
+ * file and dropped from memory. The position of every value in the file is
+ * kept in an index of offsets, so <code>opt</code> can read a spilled value
+ * back by seeking to it.
+ * <p>
+ * A spilled value is parsed again each time it is read, so changes made to
+ * a JSONObject or JSONArray obtained from <code>opt</code> are not kept.
+ * Its type is the one that JSONTokener gives its text, which may not be
+ * the type that was put: a Double 1.0 is read back as the Integer 1, and a
+ * BigDecimal or JSONNumber as a Double. Use the typed getters, such as
+ * <code>getDouble</code>, to read numbers the same way wherever they are.
+ * <code>write</code> copies the spilled text straight from the file without
+ * parsing it. Values can only be appended; <code>remove</code> and
+ * <code>put</code> at an existing index are not supported.
+ * <p>
+ * Callers must call <code>close</code> to delete the temporary file when the
+ * array is no longer needed. The file is not deleted at exit otherwise.
+ * A SpillableJSONArray is not thread-safe.
+ */
+public class SpillableJSONArray extends JSONArray implements Closeable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The directory for the temporary file, or null for the default.
+     */
+    private final File directory;
+
+    /**
+     * The values that have not been spilled yet.
+     */
+    private final ArrayList<Object> window;
+
+    /**
+     * The largest number of values kept in memory.
+     */
+    private final int windowSize;
+
+    /**
+     * The temporary file, made on the first spill.
+     */
+    private File file;
+
+    /**
+     * The offset of each spilled value in the file, and the end offset
+     * after the last one. Each value is followed by a comma in the file.
+     */
+    private long[] offsets = new long[] {0};
+
+    /**
+     * The open temporary file.
+     */
+    private RandomAccessFile raf;
+
+    /**
+     * The number of values in the file.
+     */
+    private int spilled;
+
+
+    /**
+     * Construct an empty SpillableJSONArray that spills to the default
+     * temporary directory.
+     * @param windowSize The largest number of values to keep in memory.
+     */
+    public SpillableJSONArray(int windowSize) {
+        this(windowSize, null);
+    }
+
+
+    /**
+     * Construct an empty SpillableJSONArray.
+     * @param windowSize The largest number of values to keep in memory.
+     * @param directory The directory for the temporary file, or null for the
+     *  default temporary directory.
+     */
+    public SpillableJSONArray(int windowSize, File directory) {
+        super((Void)null);
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Bad window size: " +
+                    windowSize);
+        }
+        this.directory = directory;
+        this.windowSize = windowSize;
+        this.window = new ArrayList<Object>(Math.min(windowSize, 1024));
+    }
+
+
+    /**
+     * Remove all of the values and empty the temporary file.
+     */
+    @Override
+    public void clear() {
+        this.window.clear();
+        this.spilled = 0;
+        this.offsets = new long[] {0};
+        if (this.raf != null) {
+            try {
+                this.raf.setLength(0);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+        }
+    }
+
+
+    /**
+     * Delete the temporary file. The SpillableJSONArray is empty afterwards.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void close() throws IOException {
+        this.window.clear();
+        this.spilled = 0;
+        this.offsets = new long[] {0};
+        if (this.raf != null) {
+            try {
+                this.raf.close();
+            } finally {
+                this.raf = null;
+                this.file.delete();
+                this.file = null;
+            }
+        }
+    }
+
+
+    /**
+     * Replace the JSONStringView values in memory by Strings. Spilled
+     * values are always read back as Strings.
+     * @return this.
+     */
+    @Override
+    public JSONArray detach() {
+        for (int i = 0; i < this.window.size(); i += 1) {
+            Object v = this.window.get(i);
+            if (v instanceof JSONStringView) {
+                this.window.set(i, v.toString());
+            } else if (v instanceof JSONObject) {
+                ((JSONObject)v).detach();
+            } else if (v instanceof JSONArray) {
+                ((JSONArray)v).detach();
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * Add the memory taken by the values in the window and by the index of
+     * offsets to a JSONFootprint. The spilled values are on disk, so they
+     * are not counted.
+     */
+    @Override
+    void footprint(JSONFootprint f) {
+        f.addArray(JSONFootprint.objectSize(7, 2 * 4) +
+                JSONFootprint.objectSize(1, 2 * 4) +
+                JSONFootprint.arraySize(4, Math.max(this.window.size(),
+                        Math.min(this.windowSize, 1024))) +
+                JSONFootprint.arraySize(8, this.offsets.length));
+        for (int i = 0; i < this.window.size(); i += 1) {
+            f.add(this.window.get(i));
+        }
+    }
+
+
+    /**
+     * Get the number of values, in memory and spilled.
+     * @return The length.
+     */
+    @Override
+    public int length() {
+        return this.spilled + this.window.size();
+    }
+
+
+    /**
+     * Get the value at an index. A spilled value is read from the file and
+     * parsed, so a number may come back as another Number type than the one
+     * that was put.
+     * @param index The index must be between 0 and length() - 1.
+     * @return The value, or null if there is no value at the index.
+     */
+    @Override
+    public Object opt(int index) {
+        if (index < 0 || index >= length()) {
+            return null;
+        }
+        if (index >= this.spilled) {
+            return this.window.get(index - this.spilled);
+        }
+        long start = this.offsets[index];
+        byte[] bytes = new byte[(int)(this.offsets[index + 1] - start - 1)];
+        try {
+            this.raf.seek(start);
+            this.raf.readFully(bytes);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return new JSONTokener(new String(bytes, UTF8)).nextValue();
+    }
+
+
+    /**
+     * Append a value. If the window is full, the values in memory are
+     * written to the temporary file first.
+     * @param value The value.
+     * @return this.
+     * @throws JSONException If the value is a non-finite number or if the
+     *  values cannot be written.
+     */
+    @Override
+    public JSONArray put(Object value) {
+        JSONObject.testValidity(value);
+        if (this.window.size() >= this.windowSize) {
+            spill();
+        }
+        this.window.add(value);
+        return this;
+    }
+
+
+    /**
+     * Append a value at an index, which must be the length.
+     * @param index The length of the array.
+     * @param value The value.
+     * @return this.
+     * @throws JSONException If the index is not the length.
+     */
+    @Override
+    public JSONArray put(int index, Object value) throws JSONException {
+        if (index != length()) {
+            throw new JSONException(
+                    "A SpillableJSONArray can only be appended to.");
+        }
+        return put(value);
+    }
+
+
+    /**
+     * Values cannot be removed from a SpillableJSONArray.
+     * @throws JSONException Always.
+     */
+    @Override
+    public Object remove(int index) {
+        throw new JSONException(
+                "A SpillableJSONArray can only be appended to.");
+    }
+
+
+    /**
+     * Serialize the values in the window, each followed by a comma, and
+     * append them to the file in one write.
+     */
+    private void spill() throws JSONException {
+        int n = this.window.size();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(n * 32);
+        long end = this.offsets[this.spilled];
+        if (this.spilled + n + 1 > this.offsets.length) {
+            long[] a = new long[Math.max(this.offsets.length * 2,
+                    this.spilled + n + 1)];
+            System.arraycopy(this.offsets, 0, a, 0, this.spilled + 1);
+            this.offsets = a;
+        }
+        for (int i = 0; i < n; i += 1) {
+            byte[] bytes = (JSONObject.valueToString(this.window.get(i)) +
+                    ',').getBytes(UTF8);
+            out.write(bytes, 0, bytes.length);
+            end += bytes.length;
+            this.offsets[this.spilled + i + 1] = end;
+        }
+        try {
+            if (this.raf == null) {
+                this.file = File.createTempFile("json", ".spill",
+                        this.directory);
+                this.raf = new RandomAccessFile(this.file, "rw");
+            }
+            this.raf.seek(this.offsets[this.spilled]);
+            this.raf.write(out.toByteArray());
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.spilled += n;
+        this.window.clear();
+    }
+
+
+    /**
+     * Write the values as JSON text. The spilled values are copied from the
+     * file without being parsed, unless the text is pretty printed.
+     */
+    @Override
+    void serialize(JSONSerializer s) throws IOException {
+        if (s.isPretty()) {
+            s.elements(this);
+            return;
+        }
+        s.write('[');
+        boolean b = false;
+        if (this.spilled > 0) {
+            char[] buffer = new char[8192];
+            Reader reader = new InputStreamReader(
+                    new FileInputStream(this.file), UTF8);
+            try {
+
+// The file ends with the comma after the last value, so each character is
+// held back until the next one has been read, and the last one is dropped.
+
+                char held = 0;
+                boolean holding = false;
+                int n;
+                while ((n = reader.read(buffer)) > 0) {
+                    if (holding) {
+                        s.write(held);
+                    }
+                    s.write(buffer, 0, n - 1);
+                    held = buffer[n - 1];
+                    holding = true;
+                }
+            } finally {
+                reader.close();
+            }
+            b = true;
+        }
+        for (int i = 0; i < this.window.size(); i += 1) {
+            if (b) {
+                s.write(',');
+            }
+            s.value(this.window.get(i));
+            b = true;
+        }
+        s.write(']');
+    }
+}
@@ -354,8 +354,8 @@ public class XML {
                 if (v == null) {
                     v = "";
                 }
-                if (v instanceof String) {
-                    s = (String)v;
+                if (v instanceof CharSequence) {
+                    s = v.toString();
                 } else {
                     s = null;
                 }
@@ -395,7 +395,7 @@ public class XML {
                             b.append(toString(v, k));
                         }
                     }
-                } else if (v.equals("")) {
+                } else if (s != null && s.length() == 0) {
                     b.append('<');
                     b.append(k);
                     b.append("/>");
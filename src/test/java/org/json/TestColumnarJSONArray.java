@@ -0,0 +1,78 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestColumnarJSONArray extends TestCase
+{
+    private static final String TEXT = "[{\"id\":1,\"px\":1.5,\"side\":\"buy\",\"ok\":true},"
+        + "{\"id\":12345678901,\"px\":2.25,\"side\":\"sell\",\"ok\":false},"
+        + "{\"id\":3,\"side\":\"buy\",\"ok\":true,\"note\":{\"a\":1}}]";
+
+    public void testRoundTrip() throws Exception
+    {
+        final ColumnarJSONArray ca = new ColumnarJSONArray(TEXT);
+
+        Assert.assertEquals(3, ca.length());
+        Assert.assertEquals(new JSONArray(TEXT).toString(), ca.toString());
+        Assert.assertEquals(ca.toString(), ca.toRows().toString());
+        Assert.assertEquals(12345678901L, ca.getLong(1, "id"));
+        Assert.assertEquals(2.25, ca.getDouble(1, "px"), 0.0);
+        Assert.assertFalse(ca.getJSONObject(2).has("px"));
+        Assert.assertEquals(1, ca.getJSONObject(2).getJSONObject("note").getInt("a"));
+        try {
+            ca.getDouble(2, "px");
+            fail();
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    public void testUpdates() throws Exception
+    {
+        final ColumnarJSONArray ca = new ColumnarJSONArray(TEXT);
+
+        ca.getJSONObject(0).put("px", "n/a");
+        Assert.assertEquals("n/a", ca.getJSONObject(0).getString("px"));
+        Assert.assertEquals(2.25, ca.getDouble(1, "px"), 0.0);
+
+        final Object removed = ca.remove(0);
+        Assert.assertEquals("{\"id\":1,\"px\":\"n/a\",\"side\":\"buy\",\"ok\":true}", removed.toString());
+        Assert.assertEquals(2, ca.length());
+        Assert.assertEquals("sell", ca.getJSONObject(0).getString("side"));
+        Assert.assertTrue(ca.getJSONObject(1).has("note"));
+
+        ca.put(1, ca.getJSONObject(0));
+        Assert.assertEquals(ca.get(0).toString(), ca.get(1).toString());
+        try {
+            ca.put("text");
+            fail();
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    public void testCDL() throws Exception
+    {
+        final ColumnarJSONArray ca = CDL.toColumnarJSONArray("a,b\n1,x\n2,y\n");
+
+        Assert.assertEquals(2, ca.length());
+        Assert.assertEquals(CDL.toJSONArray("a,b\n1,x\n2,y\n").toString(), ca.toString());
+    }
+
+    public void testMixedNumbers() throws Exception
+    {
+        final ColumnarJSONArray ca = new ColumnarJSONArray("[{\"a\":10,\"b\":1.5,\"c\":1},{\"a\":10.5,\"b\":2,\"c\":9007199254740993}]");
+
+        Assert.assertEquals("[{\"a\":10,\"b\":1.5,\"c\":1},{\"a\":10.5,\"b\":2,\"c\":9007199254740993}]", ca.toString());
+        Assert.assertEquals(10.0, ca.getDouble(0, "a"), 0.0);
+        Assert.assertEquals(10.5, ca.getDouble(1, "a"), 0.0);
+        Assert.assertEquals(2, ca.getJSONObject(1).getInt("b"));
+        Assert.assertTrue(ca.getJSONObject(0).get("a") instanceof Double);
+        Assert.assertTrue(ca.getJSONObject(1).get("b") instanceof Double);
+
+        ca.getJSONObject(0).put("c", 0.5);
+        Assert.assertEquals(9007199254740993L, ca.getLong(1, "c"));
+        Assert.assertEquals(0.5, ca.getDouble(0, "c"), 0.0);
+    }
+}
@@ -0,0 +1,101 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestConcurrentJSONObject extends TestCase
+{
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 2000;
+
+    public void testConcurrentUpdates() throws Exception
+    {
+        final ConcurrentJSONObject obj = new ConcurrentJSONObject();
+        final Thread [] threads = new Thread[THREADS];
+
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < ROUNDS; j++) {
+                        obj.increment("count");
+                        obj.accumulate("values", j);
+                        obj.append("list", j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < THREADS; i++) {
+            threads[i].join();
+        }
+
+        Assert.assertEquals(THREADS * ROUNDS, obj.getInt("count"));
+        Assert.assertEquals(THREADS * ROUNDS, obj.getJSONArray("values").length());
+        Assert.assertEquals(THREADS * ROUNDS, obj.getJSONArray("list").length());
+    }
+
+    public void testSnapshot() throws Exception
+    {
+        final ConcurrentJSONObject obj = new ConcurrentJSONObject("{\"a\":1}");
+        final JSONObject snapshot = obj.snapshot();
+        obj.put("b", 2);
+
+        Assert.assertEquals(1, snapshot.length());
+        Assert.assertEquals("{\"a\":1}", snapshot.toString());
+        Assert.assertEquals(2, obj.length());
+        Assert.assertFalse(obj.has(null));
+        Assert.assertNull(obj.remove(null));
+    }
+
+    public void testDuplicateKey() throws Exception
+    {
+        final ConcurrentJSONObject obj = new ConcurrentJSONObject();
+        obj.putOnce("a", "b");
+        try {
+            obj.putOnce("a", "c");
+            Assert.fail();
+        } catch (JSONException e) {
+            Assert.assertEquals("b", obj.getString("a"));
+        }
+    }
+
+    public void testAppendInPlace() throws Exception
+    {
+        final ConcurrentJSONObject obj = new ConcurrentJSONObject();
+        obj.put("list", new JSONArray().put(0));
+        obj.append("list", 1);
+        final JSONArray list = obj.getJSONArray("list");
+        obj.append("list", 2);
+        obj.accumulate("list", 3);
+
+        Assert.assertSame(list, obj.getJSONArray("list"));
+        Assert.assertEquals("[0,1,2,3]", list.toString());
+
+        final JSONObject snapshot = obj.snapshot();
+        obj.append("list", 4);
+        Assert.assertEquals("{\"list\":[0,1,2,3]}", snapshot.toString());
+        Assert.assertEquals("{\"list\":[0,1,2,3,4]}", obj.toString());
+        Assert.assertEquals(new JSONArray("[0,1,2,3,4]"), list);
+    }
+
+    public void testNullValues() throws Exception
+    {
+        final ConcurrentJSONObject obj = new ConcurrentJSONObject();
+        final JSONObject plain = new JSONObject();
+        for (JSONObject o : new JSONObject[] {obj, plain}) {
+            o.accumulate("a", null);
+            o.append("b", null);
+            o.putOnce("c", null);
+            o.accumulate("d", 1);
+            o.accumulate("d", null);
+        }
+
+        Assert.assertFalse(obj.has("a"));
+        Assert.assertFalse(obj.has("c"));
+        Assert.assertEquals(plain.getJSONArray("b"), obj.getJSONArray("b"));
+        Assert.assertEquals(plain.getJSONArray("d"), obj.getJSONArray("d"));
+        Assert.assertEquals(plain.length(), obj.length());
+    }
+}
@@ -0,0 +1,28 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestCopy extends TestCase
+{
+    public void testCopy() throws Exception
+    {
+        final JSONObject base = new JSONObject("{\"status\":\"ok\",\"data\":{\"items\":[1,{\"a\":true}]},\"none\":null}");
+
+        final JSONObject deep = base.deepCopy();
+        Assert.assertEquals(base, deep);
+        Assert.assertNotSame(base.get("data"), deep.get("data"));
+        Assert.assertSame(base.get("status"), deep.get("status"));
+        deep.getJSONObject("data").getJSONArray("items").put(2);
+        Assert.assertEquals(2, base.getJSONObject("data").getJSONArray("items").length());
+
+        final JSONObject shallow = base.shallowCopy();
+        Assert.assertSame(base.get("data"), shallow.get("data"));
+        shallow.put("status", "changed");
+        Assert.assertEquals("ok", base.getString("status"));
+        Assert.assertEquals(base.getJSONObject("data").getJSONArray("items"),
+            base.getJSONObject("data").getJSONArray("items").shallowCopy());
+
+        Assert.assertEquals(base, ((JSONObject) JSONTape.parse(base.toString()).view(0)).deepCopy());
+    }
+}
@@ -0,0 +1,26 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestEquals extends TestCase
+{
+    public void testEquals() throws Exception
+    {
+        final JSONObject a = new JSONObject("{\"x\":1,\"y\":[1.5,\"s\",{\"z\":null}]}");
+        final JSONObject b = new JSONObject("{\"y\":[1.5,\"s\",{\"z\":null}],\"x\":1.0}");
+
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+        Assert.assertEquals(a.getJSONArray("y"), b.getJSONArray("y"));
+        Assert.assertFalse(a.equals(new JSONObject("{\"x\":1,\"y\":[1.5,\"s\",{}]}")));
+        Assert.assertFalse(a.getJSONArray("y").equals(new JSONArray("[\"s\",1.5,{\"z\":null}]")));
+
+        final JSONTokener x = new JSONTokener("{\"x\":1.00,\"y\":[1.5,\"s\",{\"z\":null}]}");
+        x.setLazyNumbers(true);
+        final JSONObject lazy = new JSONObject(x);
+        Assert.assertEquals(a, lazy);
+        Assert.assertEquals(a.hashCode(), lazy.hashCode());
+        Assert.assertEquals(a, JSONTape.parse(b.toString()).view(0));
+    }
+}
@@ -0,0 +1,26 @@
+package org.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestExactNumbers extends TestCase
+{
+    public void testExactNumbers() throws Exception
+    {
+        final String text = "{\"amount\":2.50,\"big\":123456789012345678901234,\"id\":9007199254740993,\"n\":7,\"e\":1E+3}";
+        final JSONTokener x = new JSONTokener(text);
+        x.setExactNumbers(true);
+        final JSONObject obj = new JSONObject(x);
+
+        Assert.assertEquals(new BigDecimal("2.50"), obj.get("amount"));
+        Assert.assertEquals(new BigInteger("123456789012345678901234"), obj.get("big"));
+        Assert.assertEquals(Long.valueOf(9007199254740993L), obj.get("id"));
+        Assert.assertEquals(Integer.valueOf(7), obj.get("n"));
+        Assert.assertEquals(text, obj.toString());
+        Assert.assertEquals(new BigDecimal("2.5"), new JSONObject("{\"a\":2.5}").getBigDecimal("a"));
+        Assert.assertEquals("{\"d\":2.5}", new JSONObject().put("d", 2.500).toString());
+    }
+}
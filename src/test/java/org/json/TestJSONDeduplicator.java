@@ -0,0 +1,26 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONDeduplicator extends TestCase
+{
+    public void testDeduplicator() throws Exception
+    {
+        final String text = "{\"a\":{\"cur\":\"EUR\",\"n\":[]},\"b\":{\"cur\":\"EUR\",\"n\":[]},\"c\":{\"n\":[],\"cur\":\"EUR\"}}";
+        final JSONDeduplicator dedup = new JSONDeduplicator();
+        final JSONTokener x = new JSONTokener(text);
+        x.setDeduplicator(dedup);
+        final JSONObject obj = new JSONObject(x);
+
+        Assert.assertSame(obj.get("a"), obj.get("b"));
+        Assert.assertNotSame(obj.get("a"), obj.get("c"));
+        Assert.assertSame(obj.getJSONObject("a").get("n"), obj.getJSONObject("c").get("n"));
+        Assert.assertEquals(text, obj.toString());
+
+        final JSONObject other = new JSONObject(text);
+        Assert.assertSame(dedup.canonicalize(other.get("b")), obj.get("a"));
+        dedup.canonicalize(other);
+        Assert.assertSame(other.get("c"), obj.get("c"));
+    }
+}
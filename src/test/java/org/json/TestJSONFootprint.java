@@ -0,0 +1,55 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONFootprint extends TestCase
+{
+    public void testFootprint() throws Exception
+    {
+        final JSONObject obj = new JSONObject("{\"name\":\"abcdefgh\",\"n\":[1000,2.5],\"o\":{}}");
+        final JSONFootprint f = JSONFootprint.of(obj);
+
+        Assert.assertTrue(f.getObjects() > 0);
+        Assert.assertTrue(f.getArrays() > 0);
+        Assert.assertTrue(f.getStrings() > 0);
+        Assert.assertEquals(40, f.getNumbers());
+        Assert.assertEquals(f.getObjects() + f.getArrays() + f.getStrings() + f.getNumbers(), f.getTotal());
+
+        final JSONTokener x = new JSONTokener("[\"aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa\",\"b\",\"c\"]");
+        x.setSizeLimit(100);
+        try {
+            new JSONArray(x);
+            fail();
+        } catch (JSONException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Estimated size exceeds"));
+        }
+    }
+
+    public void testSubclassFootprint() throws Exception
+    {
+        final JSONArray plain = new JSONArray();
+        for (int i = 0; i < 1000; i++) {
+            plain.put(new JSONObject().put("id", 1000 + i).put("name", "n" + i % 3));
+        }
+        final ColumnarJSONArray columnar = new ColumnarJSONArray(plain);
+        final JSONFootprint p = JSONFootprint.of(plain);
+        final JSONFootprint c = JSONFootprint.of(columnar);
+
+        Assert.assertEquals(0, c.getObjects());
+        Assert.assertEquals(0, c.getNumbers());
+        Assert.assertEquals(4 * JSONFootprint.stringSize(2) + JSONFootprint.stringSize(4), c.getStrings());
+        Assert.assertTrue(c.getTotal() * 4 < p.getTotal());
+
+        final SpillableJSONArray spillable = new SpillableJSONArray(10);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                spillable.put(plain.get(i));
+            }
+            final JSONFootprint s = JSONFootprint.of(spillable);
+            Assert.assertEquals(10 * JSONFootprint.shallowSize(plain.get(0)), s.getObjects());
+        } finally {
+            spillable.close();
+        }
+    }
+}
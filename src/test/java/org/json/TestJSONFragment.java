@@ -0,0 +1,44 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONFragment extends TestCase
+{
+    public void testFragments() throws Exception
+    {
+        final byte[] upstream = "{\"name\":\"é\",\"n\":[1,2]}".getBytes("UTF-8");
+        final JSONObject envelope = new JSONObject()
+            .put("status", "ok")
+            .put("data", new JSONFragment(upstream))
+            .put("list", new JSONArray().put(new JSONFragment("[true]".toCharArray())));
+        final String expected = "{\"status\":\"ok\",\"data\":{\"name\":\"é\",\"n\":[1,2]},\"list\":[[true]]}";
+
+        Assert.assertEquals(expected, envelope.toString());
+        Assert.assertEquals(expected, envelope.write(new java.io.StringWriter()).toString());
+        final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        envelope.write(out);
+        Assert.assertTrue(java.util.Arrays.equals(expected.getBytes("UTF-8"), out.toByteArray()));
+        Assert.assertEquals(expected, new JSONStringer().object().key("status").value("ok")
+            .key("data").value(new JSONFragment(upstream)).key("list").value(new JSONArray("[[true]]"))
+            .endObject().toString());
+
+        final JSONTokener x = new JSONTokener("{\"id\":1,\"payload\":{ \"a\" : [1, \"\\u0041\"], \"b\":null },\"c\":{\"payload\":2.5e3}}");
+        x.setFragmentKeys(java.util.Collections.singleton("payload"));
+        final JSONObject parsed = new JSONObject(x);
+        Assert.assertEquals(new JSONFragment("{\"a\":[1,\"\\u0041\"],\"b\":null}"), parsed.get("payload"));
+        Assert.assertTrue(parsed.getJSONObject("c").get("payload") instanceof JSONFragment);
+        Assert.assertEquals("{\"id\":1,\"payload\":{\"a\":[1,\"\\u0041\"],\"b\":null},\"c\":{\"payload\":2.5e3}}",
+            parsed.toString());
+
+        final String[] bad = { "{'a':1}", "{a:1}", "[1,]", "\"x", "0x10", "[1;2]", "tru" };
+        for (int i = 0; i < bad.length; i += 1) {
+            try {
+                new JSONTokener(bad[i]).nextFragment();
+                Assert.fail(bad[i]);
+            }
+            catch (JSONException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONKey extends TestCase
+{
+    public void testKeys() throws Exception
+    {
+        final JSONKey type = JSONKey.valueOf("type");
+        Assert.assertSame(type, JSONKey.valueOf(new String("type")));
+
+        final JSONTokener x = new JSONTokener("{\"type\":\"order\",\"id\":7}");
+        x.setInternKeys(true);
+        final JSONObject obj = new JSONObject(x);
+        Assert.assertSame(type.toString(), obj.keys().next());
+        Assert.assertEquals("order", type.getString(obj));
+        Assert.assertTrue(type.has(obj));
+
+        final JSONKey id = JSONKey.valueOf("id");
+        id.put(obj, 8);
+        Assert.assertEquals(8, id.opt(obj));
+        Assert.assertEquals("", JSONKey.valueOf("missing").optString(obj));
+    }
+}
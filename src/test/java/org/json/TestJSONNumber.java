@@ -0,0 +1,22 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONNumber extends TestCase
+{
+    public void testLazyNumbers() throws Exception
+    {
+        final String s = "{\"id\":12345678901234567890123,\"amount\":10.50,\"n\":7,\"hex\":0x10}";
+        final JSONTokener x = new JSONTokener(s);
+        x.setLazyNumbers(true);
+        final JSONObject obj = new JSONObject(x);
+
+        Assert.assertTrue(obj.get("id") instanceof JSONNumber);
+        Assert.assertTrue(obj.get("amount") instanceof JSONNumber);
+        Assert.assertEquals(7, obj.getInt("n"));
+        Assert.assertEquals(10.5, obj.getDouble("amount"), 0.0);
+        Assert.assertEquals(16, obj.get("hex"));
+        Assert.assertEquals("{\"id\":12345678901234567890123,\"amount\":10.50,\"n\":7,\"hex\":16}", obj.toString());
+    }
+}
@@ -0,0 +1,35 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONNumberFormat extends TestCase
+{
+    public void testNumberFormat() throws Exception
+    {
+        final java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 20000; i++) {
+            final int scale = random.nextInt(7);
+            final double d = (random.nextInt(2000000000) - 1000000000) / Math.pow(10, scale);
+            final String s = Double.toString(d);
+            final String expected = s.indexOf('E') < 0 ? s.replaceAll("\\.?0+$", "") : s;
+            Assert.assertEquals(expected, JSONObject.doubleToString(d));
+            Assert.assertEquals(expected, JSONObject.numberToString(Double.valueOf(d)));
+
+            final double r = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(r) && !Double.isInfinite(r)) {
+                Assert.assertEquals(r, Double.parseDouble(JSONObject.doubleToString(r)));
+            }
+        }
+        Assert.assertEquals("-0", JSONObject.doubleToString(-0.0));
+        Assert.assertEquals("1.0E7", JSONObject.doubleToString(1e7));
+        Assert.assertEquals("0.001", JSONObject.doubleToString(0.001));
+        Assert.assertEquals("-9223372036854775808", JSONObject.numberToString(Long.MIN_VALUE));
+        Assert.assertEquals("[0,-12,2147483647,0.1,100,1.5]",
+                new JSONArray().put(0).put(-12).put(Integer.MAX_VALUE).put(0.1).put(100.0).put(1.5f).toString());
+
+        final java.io.StringWriter w = new java.io.StringWriter();
+        new JSONWriter(w).array().value(2.5).value(-3L).endArray();
+        Assert.assertEquals("[2.5,-3]", w.toString());
+    }
+}
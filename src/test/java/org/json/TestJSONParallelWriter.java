@@ -0,0 +1,51 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONParallelWriter extends TestCase
+{
+    public void testParallelWrite() throws Exception
+    {
+        final JSONArray big = new JSONArray();
+        final JSONObject members = new JSONObject();
+        for (int i = 0; i < 5000; i += 1) {
+            big.put(new JSONObject().put("i", i).put("s", "é" + i).put("d", i / 8.0));
+            members.put("k" + i, new JSONArray().put(i).put(JSONObject.NULL));
+        }
+        big.put(new JSONFragment("{\"raw\":true}"));
+
+        final java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(4);
+        try {
+            Assert.assertEquals(big.toString(), big.write(new java.io.StringWriter(), executor).toString());
+            Assert.assertEquals(members.toString(), members.write(new java.io.StringWriter(), executor).toString());
+
+            final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            big.write(out, executor);
+            Assert.assertTrue(java.util.Arrays.equals(big.toString().getBytes("UTF-8"), out.toByteArray()));
+
+            final JSONObject wrapper = new JSONObject().put("data", big).put("n", 1);
+            final long tasks = ((java.util.concurrent.ThreadPoolExecutor)executor).getTaskCount();
+            Assert.assertEquals(wrapper.toString(), wrapper.write(new java.io.StringWriter(), executor).toString());
+            Assert.assertEquals(tasks + 5, ((java.util.concurrent.ThreadPoolExecutor)executor).getTaskCount());
+
+            Assert.assertEquals("[1]", new JSONArray().put(1).write(new java.io.StringWriter(), executor).toString());
+            Assert.assertEquals(big.toString(), big.write(new java.io.StringWriter(), null).toString());
+
+            big.put(new JSONString() {
+                public String toJSONString() {
+                    throw new IllegalStateException();
+                }
+            });
+            try {
+                big.write(new java.io.StringWriter(), executor);
+                Assert.fail();
+            }
+            catch (JSONException e) {
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
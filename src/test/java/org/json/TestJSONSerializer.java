@@ -0,0 +1,36 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONSerializer extends TestCase
+{
+    public void testStreamingSerializer() throws Exception
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            sb.append("a\"</\u2028\n");
+        }
+        final String text = sb.toString();
+        final JSONObject obj = new JSONObject()
+            .put("s", text)
+            .put("list", java.util.Arrays.asList(1, "two", null))
+            .put("nested", new JSONObject().put("x", true));
+        final String expected = "{\"s\":" + JSONObject.quote(text)
+            + ",\"list\":[1,\"two\",null],\"nested\":{\"x\":true}}";
+
+        Assert.assertEquals(expected, obj.toString());
+        Assert.assertEquals(expected, obj.write(new java.io.StringWriter()).toString());
+        Assert.assertEquals("1, \"two\"", new JSONArray("[1,\"two\"]").join(", "));
+
+        final java.io.StringWriter w = new java.io.StringWriter();
+        new JSONWriter(w).array().value(obj).value("x").endArray();
+        Assert.assertEquals("[" + expected + ",\"x\"]", w.toString());
+
+        final java.util.Map<Integer, Object> numbered = new java.util.LinkedHashMap<Integer, Object>();
+        numbered.put(1, "one");
+        numbered.put(2, java.util.Collections.singleton(2));
+        Assert.assertEquals("{\"m\":{\"1\":\"one\",\"2\":[2]}}",
+                new JSONObject().put("m", numbered).toString());
+    }
+}
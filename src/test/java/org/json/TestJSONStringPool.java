@@ -0,0 +1,26 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONStringPool extends TestCase
+{
+    public void testStringPool() throws Exception
+    {
+        final JSONStringPool pool = new JSONStringPool(64, 8);
+        final String text = "[{\"cur\":\"EUR\"},{\"cur\":\"EUR\"},{\"cur\":\"a long value here\"}]";
+
+        final JSONTokener x1 = new JSONTokener(text);
+        x1.setStringPool(pool);
+        final JSONArray first = new JSONArray(x1);
+        final JSONTokener x2 = new JSONTokener(text);
+        x2.setStringPool(pool);
+        final JSONArray second = new JSONArray(x2);
+
+        Assert.assertSame(first.getJSONObject(0).get("cur"), second.getJSONObject(1).get("cur"));
+        Assert.assertNotSame(first.getJSONObject(2).get("cur"), second.getJSONObject(2).get("cur"));
+        Assert.assertEquals(2, pool.getMisses());
+        Assert.assertEquals(8, pool.getHits());
+        Assert.assertEquals(text, second.toString());
+    }
+}
@@ -0,0 +1,37 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONStringView extends TestCase
+{
+    public void testStringViews() throws Exception
+    {
+        final char [] chars = "{\"a\":\"plain\",\"b\":\"esc\\\"aped\",\"c\":[\"x\",\"true\"]}".toCharArray();
+        final JSONTokener x = new JSONTokener(chars);
+        x.setStringViews(true);
+        final JSONObject obj = new JSONObject(x);
+
+        Assert.assertTrue(obj.get("a") instanceof JSONStringView);
+        Assert.assertTrue(((JSONStringView) obj.get("a")).isAttached());
+        Assert.assertTrue(obj.get("b") instanceof String);
+        Assert.assertEquals("esc\"aped", obj.getString("b"));
+        Assert.assertTrue(obj.getJSONArray("c").getBoolean(1));
+        Assert.assertEquals("{\"a\":\"plain\",\"b\":\"esc\\\"aped\",\"c\":[\"x\",\"true\"]}", obj.toString());
+        Assert.assertEquals(new JSONObject(new String(chars)).hashCode(), obj.hashCode());
+        Assert.assertTrue(((JSONStringView) obj.get("a")).isAttached());
+
+        final JSONTokener ml = new JSONTokener("[\"p\",\"hello\"]".toCharArray());
+        ml.setStringViews(true);
+        Assert.assertEquals("<p>hello</p>", JSONML.toString(new JSONArray(ml)));
+
+        final String xml = "{\"r\":{\"e\":\"\",\"t\":\"a<b\",\"content\":\"c\"}}";
+        final JSONTokener xt = new JSONTokener(xml.toCharArray());
+        xt.setStringViews(true);
+        Assert.assertEquals(XML.toString(new JSONObject(xml)), XML.toString(new JSONObject(xt)));
+
+        obj.detach();
+        Assert.assertTrue(obj.get("a") instanceof String);
+        Assert.assertTrue(obj.getJSONArray("c").get(0) instanceof String);
+    }
+}
@@ -0,0 +1,38 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONStringer extends TestCase
+{
+    public void testReusableStringer() throws Exception
+    {
+        final JSONStringer js = JSONStringer.acquire();
+        js.object().key("k").value("é").endObject();
+        Assert.assertEquals("{\"k\":\"é\"}", js.toString());
+        Assert.assertEquals(9, js.length());
+        Assert.assertEquals("{\"k\":\"é\"}", new String(js.getBuffer(), 0, js.length()));
+        Assert.assertTrue(java.util.Arrays.equals("{\"k\":\"é\"}".getBytes("UTF-8"), js.toUTF8()));
+
+        final JSONStringer other = JSONStringer.acquire();
+        Assert.assertNotSame(js, other);
+        js.release();
+        Assert.assertSame(js, JSONStringer.acquire());
+        Assert.assertEquals("", js.toString());
+        Assert.assertEquals("[1]", js.array().value(1).endArray().toString());
+
+        js.reset();
+        js.array().value("unfinished");
+        js.reset();
+        Assert.assertEquals("[true]", js.array().value(true).endArray().toString());
+
+        js.setCheckKeys(false);
+        js.setMaxDepth(2);
+        js.release();
+        final JSONStringer pooled = JSONStringer.acquire();
+        Assert.assertSame(js, pooled);
+        Assert.assertTrue(pooled.isCheckKeys());
+        Assert.assertEquals(20, pooled.getMaxDepth());
+        Assert.assertEquals("[[[]]]", pooled.array().array().array().endArray().endArray().endArray().toString());
+    }
+}
@@ -0,0 +1,130 @@
+package org.json;
+
+import java.io.File;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.json.test.JsonAssert;
+
+public class TestJSONTape extends TestCase
+{
+    private static final String TEXT = "{\"name\":\"tape\",\"ids\":[1,-2,3.25,1e3,123456789012345678901234],"
+        + "\"nested\":{\"ok\":true,\"no\":false,\"none\":null,\"esc\":\"a\\\"b\\u0041\"},\"empty\":[]}";
+
+    public void testNavigation() throws Exception
+    {
+        final JSONTape tape = JSONTape.parse(TEXT);
+
+        Assert.assertEquals('{', tape.type(0));
+        Assert.assertEquals(4, tape.length(0));
+
+        final int name = tape.find(0, "name");
+        Assert.assertEquals('"', tape.type(name));
+        Assert.assertTrue(tape.stringEquals(name, "tape"));
+
+        final int ids = tape.find(0, "ids");
+        Assert.assertEquals(5, tape.length(ids));
+        Assert.assertEquals(-2, tape.getLong(tape.index(ids, 1)));
+        Assert.assertEquals(3.25, tape.getDouble(tape.index(ids, 2)), 0.0);
+        Assert.assertEquals(1000.0, tape.getDouble(tape.index(ids, 3)), 0.0);
+        Assert.assertEquals('N', tape.type(tape.index(ids, 4)));
+        Assert.assertEquals(-1, tape.index(ids, 5));
+
+        final int nested = tape.find(0, "nested");
+        Assert.assertTrue(tape.getBoolean(tape.find(nested, "ok")));
+        Assert.assertFalse(tape.getBoolean(tape.find(nested, "no")));
+        Assert.assertTrue(tape.isNull(tape.find(nested, "none")));
+        Assert.assertEquals("a\"bA", tape.getString(tape.find(nested, "esc")));
+        Assert.assertEquals(-1, tape.find(nested, "missing"));
+
+        Assert.assertEquals(-1, tape.first(tape.find(0, "empty")));
+        Assert.assertEquals(-1, tape.next(tape.find(0, "empty")));
+    }
+
+    public void testToValue() throws Exception
+    {
+        final String text = TEXT.replace(",123456789012345678901234", "");
+        final JSONTape tape = JSONTape.parse(text.toCharArray());
+        JsonAssert.assertJsonEquals(new JSONObject(text), (JSONObject) tape.toValue(0));
+        Assert.assertEquals(new JSONObject(text).toString(), tape.toString());
+    }
+
+    public void testStrict() throws Exception
+    {
+        final String [] bad = { "{'a':1}", "[1,]", "{\"a\" 1}", "[01]", "[1.]", "[\"a\tb\"]", "[] x" };
+        for (int i = 0; i < bad.length; i++) {
+            try {
+                JSONTape.parse(bad[i]);
+                Assert.fail(bad[i]);
+            } catch (JSONException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testOffHeapView() throws Exception
+    {
+        final String text = TEXT.replace(",123456789012345678901234", "");
+        final JSONTape tape = JSONTape.wrap(JSONTape.parse(text).toByteBuffer(true));
+        final JSONObject view = (JSONObject) tape.view(0);
+
+        Assert.assertEquals(new JSONObject(text).toString(), view.toString());
+        Assert.assertEquals("tape", view.getString("name"));
+        Assert.assertEquals(3.25, view.getJSONArray("ids").getDouble(2), 0.0);
+        Assert.assertEquals(1, view.getJSONArray("ids").getInt(0));
+        Assert.assertTrue(view.getJSONObject("nested").isNull("none"));
+        Assert.assertFalse(view.has("missing"));
+        try {
+            view.put("a", 1);
+            Assert.fail();
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    public void testMappedFile() throws Exception
+    {
+        final File file = File.createTempFile("tape", ".bin");
+        try {
+            JSONTape.parse(TEXT).store(file);
+            final JSONTape tape = JSONTape.map(file);
+            Assert.assertEquals(JSONTape.parse(TEXT).toString(), tape.toString());
+            Assert.assertTrue(tape.stringEquals(tape.find(0, "name"), "tape"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testConcurrentViewReads() throws Exception
+    {
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            sb.append(i == 0 ? "" : ",").append(i);
+        }
+        final JSONArray view = (JSONArray) JSONTape.parse(sb.append(']').toString()).view(0);
+        view.detach();
+
+        final Thread[] threads = new Thread[4];
+        final boolean[] failed = new boolean[1];
+        for (int t = 0; t < threads.length; t++) {
+            final int step = t + 1;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int round = 0; round < 200; round++) {
+                        for (int i = 0; i < 500; i += step) {
+                            if (view.getInt(i) != i) {
+                                failed[0] = true;
+                            }
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        Assert.assertFalse(failed[0]);
+    }
+}
@@ -0,0 +1,72 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONTextCache extends TestCase
+{
+    public void testCacheText() throws Exception
+    {
+        final JSONObject doc = new JSONObject("{\"a\":{\"b\":[1,2,{\"c\":\"x\"}]},\"d\":true}").cacheText();
+        final JSONObject a = doc.getJSONObject("a");
+        final JSONObject c = a.getJSONArray("b").getJSONObject(2);
+        final String text = doc.toString();
+
+        Assert.assertEquals("{\"a\":{\"b\":[1,2,{\"c\":\"x\"}]},\"d\":true}", text);
+        Assert.assertSame(text, doc.toString());
+        Assert.assertSame(a.toString(), a.toString());
+
+        c.put("c", "y");
+        Assert.assertEquals("{\"a\":{\"b\":[1,2,{\"c\":\"y\"}]},\"d\":true}", doc.toString());
+        Assert.assertEquals(doc.toString(), doc.write(new java.io.StringWriter()).toString());
+
+        final JSONArray b = a.getJSONArray("b");
+        b.remove(2);
+        c.put("c", "z");
+        Assert.assertEquals("{\"a\":{\"b\":[1,2]},\"d\":true}", doc.toString());
+
+        final JSONObject added = new JSONObject().put("e", 1);
+        b.put(added);
+        Assert.assertEquals("{\"a\":{\"b\":[1,2,{\"e\":1}]},\"d\":true}", doc.toString());
+        added.put("e", 2);
+        Assert.assertEquals("{\"a\":{\"b\":[1,2,{\"e\":2}]},\"d\":true}", doc.toString());
+
+        final StringBuilder raw = new StringBuilder("1");
+        doc.put("raw", new JSONString() {
+            public String toJSONString() {
+                return raw.toString();
+            }
+        });
+        Assert.assertEquals("{\"a\":{\"b\":[1,2,{\"e\":2}]},\"d\":true,\"raw\":1}", doc.toString());
+        raw.append('0');
+        Assert.assertEquals("{\"a\":{\"b\":[1,2,{\"e\":2}]},\"d\":true,\"raw\":10}", doc.toString());
+
+        doc.clear();
+        added.put("e", 3);
+        Assert.assertEquals("{}", doc.toString());
+    }
+
+    public void testSharedSubtree() throws Exception
+    {
+        final JSONObject shared = new JSONObject("{\"static\":[1,2,3]}");
+        final JSONObject kept = new JSONObject().put("s", shared).cacheText();
+        Assert.assertEquals("{\"s\":{\"static\":[1,2,3]}}", kept.toString());
+
+        java.lang.ref.WeakReference<JSONObject> first = null;
+        for (int i = 0; i < 100000; i++) {
+            final JSONObject envelope = new JSONObject().put("id", i).put("s", shared).cacheText();
+            Assert.assertEquals("{\"id\":" + i + ",\"s\":{\"static\":[1,2,3]}}", envelope.toString());
+            if (first == null) {
+                first = new java.lang.ref.WeakReference<JSONObject>(envelope);
+            }
+        }
+        for (int i = 0; i < 50 && first.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(first.get());
+
+        shared.put("more", true);
+        Assert.assertEquals("{\"s\":{\"static\":[1,2,3],\"more\":true}}", kept.toString());
+    }
+}
@@ -0,0 +1,86 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestJSONWriter extends TestCase
+{
+    public void testJSONWriterOptions() throws Exception
+    {
+        final java.io.StringWriter w = new java.io.StringWriter();
+        final JSONWriter jw = new JSONWriter(w);
+        jw.setCheckKeys(false);
+        jw.setMaxDepth(100);
+        for (int i = 0; i < 50; i++) {
+            jw.array();
+        }
+        jw.object().key("a").value(1).key("a").value("x\n").key("c").value("<</".toCharArray(), 1, 2)
+            .key("d").value((String) null).key("e").value(0.25).endObject();
+        Assert.assertEquals("", w.toString());
+        for (int i = 0; i < 50; i++) {
+            jw.endArray();
+        }
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            expected.append('[');
+        }
+        expected.append("{\"a\":1,\"a\":\"x\\n\",\"c\":\"<\\/\",\"d\":null,\"e\":0.25}");
+        for (int i = 0; i < 50; i++) {
+            expected.append(']');
+        }
+        Assert.assertEquals(expected.toString(), w.toString());
+
+        final JSONStringer js = new JSONStringer();
+        js.array();
+        try {
+            js.value(Double.valueOf(Double.NaN));
+            fail();
+        } catch (JSONException e) {
+            // expected
+        }
+        Assert.assertEquals("[1]", js.value(1).endArray().toString());
+
+        final JSONStringer late = new JSONStringer();
+        late.setCheckKeys(false);
+        late.object().key("a").value(1);
+        late.setCheckKeys(true);
+        late.key("b").value(2);
+        try {
+            late.key("b");
+            fail();
+        } catch (JSONException e) {
+            Assert.assertEquals("Duplicate key \"b\"", e.getMessage());
+        }
+
+        final char[] big = new char[10000];
+        java.util.Arrays.fill(big, 'x');
+        final JSONArray broken = new JSONArray().put(new String(big)).put(new JSONString() {
+            public String toJSONString() {
+                throw new IllegalStateException();
+            }
+        });
+        final JSONWriter partial = new JSONWriter(new java.io.StringWriter()).array();
+        try {
+            partial.value(broken);
+            fail();
+        } catch (JSONException e) {
+            Assert.assertEquals("Part of the value was already written.", e.getMessage());
+        }
+        try {
+            partial.value(1);
+            fail();
+        } catch (JSONException e) {
+            // expected
+        }
+
+        try {
+            final JSONWriter deep = new JSONStringer();
+            for (int i = 0; i < 21; i++) {
+                deep.array();
+            }
+            fail();
+        } catch (JSONException e) {
+            Assert.assertEquals("Nesting too deep.", e.getMessage());
+        }
+    }
+}
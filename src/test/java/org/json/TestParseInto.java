@@ -0,0 +1,44 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestParseInto extends TestCase
+{
+    public void testParseInto() throws Exception
+    {
+        final JSONObject obj = new JSONObject(8);
+        JSONObject.parseInto(new JSONTokener("{\"q\":{\"bid\":1,\"ask\":2},\"t\":[{\"p\":1}],\"x\":3}"), obj);
+        final JSONObject quote = obj.getJSONObject("q");
+        final JSONObject trade = obj.getJSONArray("t").getJSONObject(0);
+
+        JSONObject.parseInto(new JSONTokener("{\"q\":{\"bid\":5,\"ask\":6},\"t\":[{\"p\":7}]}"), obj);
+        Assert.assertSame(quote, obj.get("q"));
+        Assert.assertSame(trade, obj.getJSONArray("t").get(0));
+        Assert.assertEquals("{\"q\":{\"bid\":5,\"ask\":6},\"t\":[{\"p\":7}]}", obj.toString());
+
+        final JSONArray arr = new JSONArray(4).put(1);
+        JSONArray.parseInto(new JSONTokener("[2,3]"), arr);
+        Assert.assertEquals("[2,3]", arr.toString());
+
+        final JSONObject shared = new JSONObject().put("s", 0);
+        final JSONArray twice = new JSONArray().put(shared).put(shared);
+        JSONArray.parseInto(new JSONTokener("[{\"a\":1},{\"b\":2}]"), twice);
+        Assert.assertEquals("[{\"a\":1},{\"b\":2}]", twice.toString());
+        Assert.assertNotSame(twice.get(0), twice.get(1));
+
+        final ColumnarJSONArray columnar = new ColumnarJSONArray("[{\"a\":0}]");
+        JSONArray.parseInto(new JSONTokener("[{\"a\":1},{\"a\":2,\"b\":\"x\"}]"), columnar);
+        Assert.assertEquals(2, columnar.length());
+        Assert.assertEquals("[{\"a\":1},{\"a\":2,\"b\":\"x\"}]", columnar.toString());
+
+        final SpillableJSONArray spillable = new SpillableJSONArray(2);
+        try {
+            JSONArray.parseInto(new JSONTokener("[1,\"two\",[3],{\"four\":4},5]"), spillable);
+            Assert.assertEquals(5, spillable.length());
+            Assert.assertEquals("[1,\"two\",[3],{\"four\":4},5]", spillable.toString());
+        } finally {
+            spillable.close();
+        }
+    }
+}
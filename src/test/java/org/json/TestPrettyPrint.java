@@ -0,0 +1,19 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestPrettyPrint extends TestCase
+{
+    public void testPrettyPrint() throws Exception
+    {
+        final JSONObject obj = new JSONObject("{\"b\":[1,{\"x\":null}],\"a\":{\"k\":\"v\"},\"c\":[]}");
+        final String sorted = "{\n  \"a\": {\"k\": \"v\"},\n  \"b\": [\n    1,\n    {\"x\": null}\n  ],\n  \"c\": []\n}";
+
+        Assert.assertEquals(sorted, obj.toString(2));
+        Assert.assertEquals(sorted, obj.write(new java.io.StringWriter(), 2, true).toString());
+        Assert.assertEquals("{\n \"b\": [\n  1,\n  {\"x\": null}\n ],\n \"a\": {\"k\": \"v\"},\n \"c\": []\n}",
+                obj.write(new java.io.StringWriter(), 1, false).toString());
+        Assert.assertEquals("[[\n  1,\n  {\"x\": null}\n]]", new JSONArray().put(obj.get("b")).toString(2));
+    }
+}
@@ -0,0 +1,19 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestQuote extends TestCase
+{
+    public void testQuote() throws Exception
+    {
+        final String s = "plain </tag> a/b \"q\" \\ \b\t\n\f\r \u0001\u001f \u0085\u00a0 \u2028\u20ff\u2100 \u4e2d";
+        final String expected = "\"plain <\\/tag> a/b \\\"q\\\" \\\\ \\b\\t\\n\\f\\r \\u0001\\u001f \\u0085\u00a0 \\u2028\\u20ff\u2100 \u4e2d\"";
+
+        Assert.assertEquals(expected, JSONObject.quote(s));
+        Assert.assertEquals("{" + expected + ":" + expected + "}", new JSONObject().put(s, s).toString());
+        Assert.assertEquals("\"clean\"", JSONObject.quote("clean"));
+        Assert.assertEquals("\"\"", JSONObject.quote(null));
+        Assert.assertEquals("\"/\"", JSONObject.quote("/"));
+    }
+}
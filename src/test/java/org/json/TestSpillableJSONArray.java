@@ -0,0 +1,61 @@
+package org.json;
+
+import java.io.StringWriter;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestSpillableJSONArray extends TestCase
+{
+    public void testSpill() throws Exception
+    {
+        final SpillableJSONArray ja = new SpillableJSONArray(3);
+        final JSONArray expected = new JSONArray();
+        try {
+            for (int i = 0; i < 10; i++) {
+                final Object value = i % 2 == 0 ? new JSONObject().put("i", i).put("s", "é中" + i) : Integer.valueOf(i);
+                ja.put(value);
+                expected.put(value);
+            }
+
+            Assert.assertEquals(10, ja.length());
+            Assert.assertEquals("é中4", ja.getJSONObject(4).getString("s"));
+            Assert.assertEquals(7, ja.getInt(7));
+            Assert.assertEquals(expected.toString(), ja.toString());
+            Assert.assertEquals(expected.toString(), ja.write(new StringWriter()).toString());
+            Assert.assertEquals(expected, ja);
+
+            try {
+                ja.remove(0);
+                fail();
+            } catch (JSONException e) {
+                // expected
+            }
+
+            ja.clear();
+            ja.put("again");
+            Assert.assertEquals("[\"again\"]", ja.toString());
+        } finally {
+            ja.close();
+        }
+    }
+
+    public void testSpilledNumberTypes() throws Exception
+    {
+        final SpillableJSONArray ja = new SpillableJSONArray(1);
+        try {
+            ja.put(Double.valueOf(1.0));
+            ja.put(new java.math.BigDecimal("2.50"));
+            ja.put(Long.valueOf(3));
+            Assert.assertTrue(ja.opt(2) instanceof Long);
+
+            Assert.assertEquals(Integer.valueOf(1), ja.opt(0));
+            Assert.assertEquals(Double.valueOf(2.5), ja.opt(1));
+            Assert.assertEquals(1.0, ja.getDouble(0), 0.0);
+            Assert.assertEquals(2.5, ja.getDouble(1), 0.0);
+            Assert.assertEquals(new JSONArray().put(1.0).put(2.5).put(3L), ja);
+        } finally {
+            ja.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.json;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class TestUtf8Output extends TestCase
+{
+    public void testUtf8Output() throws Exception
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append(i % 3 == 0 ? "\ud83d\ude00" : i % 3 == 1 ? "\u00e9" : "a\u4e2d");
+        }
+        sb.append('\ud800');
+        final JSONObject obj = new JSONObject().put("s", sb.toString()).put("n", 1);
+        final JSONArray arr = new JSONArray().put(obj).put("x");
+        final byte[] expected = arr.toString().getBytes("UTF-8");
+
+        final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        arr.write(out);
+        Assert.assertTrue(java.util.Arrays.equals(expected, out.toByteArray()));
+
+        final java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(expected.length + 10);
+        obj.write(buffer);
+        Assert.assertTrue(java.util.Arrays.equals(obj.toString().getBytes("UTF-8"),
+                java.util.Arrays.copyOf(buffer.array(), buffer.position())));
+
+        try {
+            obj.write(java.nio.ByteBuffer.allocate(10));
+            fail();
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+}